@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import nl.knaw.dans.pf.language.ddm.api.Ddm2EmdCrosswalk;
+import nl.knaw.dans.pf.language.emd.EasyMetadata;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkException;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A complete crosswalk with and without validation against the XSD, from a String and from a File. The createFrom benchmarks report to the shared error
+ * handler, the createResultFrom benchmarks collect the notifications per call. Run with <code>-prof gc</code> for the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CrosswalkBenchmark {
+    @Param({"ddm.xml", "spatial.xml", "abr.xml", "ddm-creators-organization-mixed.xml", Inputs.GENERATED + "100", Inputs.GENERATED + "1000"})
+    public String input;
+
+    private Ddm2EmdCrosswalk crosswalk;
+    private File file;
+    private String xml;
+
+    @Setup
+    public void setup() throws IOException, CrosswalkException {
+        crosswalk = new Ddm2EmdCrosswalk();
+        file = Inputs.file(input);
+        xml = Inputs.xml(file);
+        if (crosswalk.createFrom(xml) == null)
+            throw new IllegalStateException(input + " does not crosswalk: " + crosswalk.getXmlErrorHandler().getMessages());
+    }
+
+    @Benchmark
+    public EasyMetadata createFromString() throws CrosswalkException {
+        // the walk methods collect notifications until reset
+        crosswalk.getXmlErrorHandler().reset();
+        return crosswalk.createFrom(xml);
+    }
+
+    @Benchmark
+    public EasyMetadata createFromValidatedString() throws CrosswalkException {
+        crosswalk.getXmlErrorHandler().reset();
+        return crosswalk.createFromValidated(xml);
+    }
+
+    @Benchmark
+    public EasyMetadata createFromFile() throws CrosswalkException {
+        crosswalk.getXmlErrorHandler().reset();
+        return crosswalk.createFrom(file);
+    }
+
+    @Benchmark
+    public EasyMetadata createFromValidatedFile() throws CrosswalkException {
+        crosswalk.getXmlErrorHandler().reset();
+        return crosswalk.createFromValidated(file);
+    }
+
+    @Benchmark
+    public CrosswalkResult<EasyMetadata> createResultFromString() throws CrosswalkException {
+        return crosswalk.createResultFrom(xml);
+    }
+
+    @Benchmark
+    public CrosswalkResult<EasyMetadata> createResultFromValidatedString() throws CrosswalkException {
+        return crosswalk.createResultFromValidated(xml);
+    }
+
+    @Benchmark
+    public CrosswalkResult<EasyMetadata> createResultFromFile() throws CrosswalkException {
+        return crosswalk.createResultFrom(file);
+    }
+
+    @Benchmark
+    public CrosswalkResult<EasyMetadata> createResultFromValidatedFile() throws CrosswalkException {
+        return crosswalk.createResultFromValidated(file);
+    }
+}
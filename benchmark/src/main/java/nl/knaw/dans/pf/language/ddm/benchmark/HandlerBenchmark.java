@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import nl.knaw.dans.pf.language.ddm.handlermaps.NameSpace;
+import nl.knaw.dans.pf.language.ddm.handlers.EasSpatialHandler;
+import nl.knaw.dans.pf.language.ddm.handlertypes.DaiAuthorHandler;
+import nl.knaw.dans.pf.language.ddm.handlertypes.IsoDateHandler;
+import nl.knaw.dans.pf.language.emd.types.Author;
+import nl.knaw.dans.pf.language.emd.types.IsoDate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * Value conversions of individual handlers. A handler collects the characters of an element until the next one starts, so the conversions that read
+ * characters use a fresh handler for each operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HandlerBenchmark {
+    private static final char[] POS = "52.08110 4.34521 1.12".toCharArray();
+    private static final char[] DATE = "2015-09-09".toCharArray();
+    private static final String DAI = "info:eu-repo/dai/nl/9876543216";
+
+    private final DaiHandler daiHandler = new DaiHandler();
+
+    static class SpatialHandler extends EasSpatialHandler {
+        void pos(final char[] text) throws SAXException {
+            characters(text, 0, text.length);
+            finishElement(NameSpace.GML.uri, "pos");
+        }
+    }
+
+    static class DaiHandler extends DaiAuthorHandler {
+        Author dai(final String value) throws SAXException {
+            return setDAI(new Author(), value);
+        }
+    }
+
+    static class DateHandler extends IsoDateHandler {
+        IsoDate date(final char[] text) throws SAXException {
+            characters(text, 0, text.length);
+            return createDate(NameSpace.DC_TERMS.uri, "created");
+        }
+    }
+
+    @Benchmark
+    public SpatialHandler spatialPoint() throws SAXException {
+        final SpatialHandler handler = new SpatialHandler();
+        handler.pos(POS);
+        return handler;
+    }
+
+    @Benchmark
+    public Author setDAI() throws SAXException {
+        return daiHandler.dai(DAI);
+    }
+
+    @Benchmark
+    public IsoDate createDate() throws SAXException {
+        return new DateHandler().date(DATE);
+    }
+}
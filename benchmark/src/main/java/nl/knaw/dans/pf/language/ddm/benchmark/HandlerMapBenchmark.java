@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import nl.knaw.dans.pf.language.ddm.api.Ddm2EmdHandlerMap;
+import nl.knaw.dans.pf.language.ddm.handlermaps.NameSpace;
+import nl.knaw.dans.pf.language.emd.EasyMetadata;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/** The handler lookup performed for each element of a crosswalk. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HandlerMapBenchmark {
+    private final Ddm2EmdHandlerMap handlerMap = Ddm2EmdHandlerMap.getInstance();
+    private final AttributesImpl noAttributes = new AttributesImpl();
+    private final AttributesImpl spatialType = new AttributesImpl();
+    private final AttributesImpl abrType = new AttributesImpl();
+
+    @Setup
+    public void setup() throws SAXException {
+        spatialType.addAttribute(NameSpace.XSI.uri, "type", "xsi:type", "CDATA", "dcx-gml:SimpleGMLType");
+        abrType.addAttribute(NameSpace.XSI.uri, "type", "xsi:type", "CDATA", "abr:ABRperiode");
+        // initializes the map outside the measurement
+        handlerMap.getHandler(NameSpace.DC.uri, "title", noAttributes);
+    }
+
+    @Benchmark
+    public CrosswalkHandler<EasyMetadata> plainElement() throws SAXException {
+        return handlerMap.getHandler(NameSpace.DC.uri, "title", noAttributes);
+    }
+
+    @Benchmark
+    public CrosswalkHandler<EasyMetadata> typedElement() throws SAXException {
+        return handlerMap.getHandler(NameSpace.DC_TERMS.uri, "spatial", spatialType);
+    }
+
+    @Benchmark
+    public CrosswalkHandler<EasyMetadata> vocabularyElement() throws SAXException {
+        return handlerMap.getHandler(NameSpace.DC_TERMS.uri, "temporal", abrType);
+    }
+
+    @Benchmark
+    public CrosswalkHandler<EasyMetadata> unknownElement() throws SAXException {
+        return handlerMap.getHandler(NameSpace.GML.uri, "Point", noAttributes);
+    }
+}
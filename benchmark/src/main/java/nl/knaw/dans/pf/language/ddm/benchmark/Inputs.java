@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/** The documents of the benchmarks: those of the unit tests and larger ones generated from them. */
+final class Inputs {
+    /** Directory with the documents of the unit tests, by default relative to the benchmark module. */
+    static final String INPUT_DIR_PROPERTY = "ddm.benchmark.input";
+    /** Prefix of a generated document, followed by the number of spatial blocks. */
+    static final String GENERATED = "generated-";
+
+    private static final String ADDITIONAL_START = "<ddm:additional-xml>";
+    private static final String ADDITIONAL_END = "</ddm:additional-xml>";
+
+    private Inputs() {}
+
+    /**
+     * @param name
+     *        a file of the unit tests, or {@link #GENERATED} followed by the number of times the spatial content of spatial.xml is repeated
+     * @return a file with the document, generated documents are written to a temporary file
+     */
+    static File file(final String name) throws IOException {
+        if (!name.startsWith(GENERATED))
+            return new File(System.getProperty(INPUT_DIR_PROPERTY, "../src/test/resources/input"), name);
+        final File file = File.createTempFile(name, ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), generate(Integer.parseInt(name.substring(GENERATED.length()))).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /** @return the content of the document */
+    static String xml(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String generate(final int copies) throws IOException {
+        final String xml = xml(file("spatial.xml"));
+        final int start = xml.indexOf(ADDITIONAL_START) + ADDITIONAL_START.length();
+        final int end = xml.indexOf(ADDITIONAL_END);
+        final String content = xml.substring(start, end);
+        final StringBuilder sb = new StringBuilder(xml.length() + copies * content.length());
+        sb.append(xml, 0, start);
+        for (int i = 0; i < copies; i++)
+            sb.append(content);
+        sb.append(xml, end, xml.length());
+        return sb.toString();
+    }
+}
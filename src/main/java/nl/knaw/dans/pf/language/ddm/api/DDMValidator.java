@@ -16,14 +16,29 @@
 package nl.knaw.dans.pf.language.ddm.api;
 
 import static nl.knaw.dans.pf.language.ddm.handlermaps.NameSpace.*;
+
+import javax.xml.validation.Schema;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.SchemaCache;
+import nl.knaw.dans.pf.language.xml.crosswalk.SchemaProvider;
 import nl.knaw.dans.pf.language.xml.validation.AbstractValidator2;
 
+import org.xml.sax.SAXException;
+
 /**
  * Utility class for validating Dans Dataset Metadata.
  */
-public class DDMValidator extends AbstractValidator2 {
+public class DDMValidator extends AbstractValidator2 implements SchemaProvider {
+    // default schemas for DDM (online locations, the SchemaCatalog resolves them to bundled copies)
+    static final String[] XSDS = {DDM.xsd, DCX_GML.xsd, NARCIS_TYPE.xsd, IDENTIFIER_TYPE.xsd, ABR.xsd};
+
     public DDMValidator() {
-        // default schemas for DDM (online)
-        super(DDM.xsd, DCX_GML.xsd, NARCIS_TYPE.xsd, IDENTIFIER_TYPE.xsd, ABR.xsd);
+        super(XSDS);
+    }
+
+    /** compiled once per process, shared by all instances */
+    @Override
+    public Schema getSchema() throws SAXException {
+        return SchemaCache.getSchema(XSDS);
     }
 }
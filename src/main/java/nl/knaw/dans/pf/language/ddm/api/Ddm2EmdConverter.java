@@ -0,0 +1,433 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+import nl.knaw.dans.pf.language.ddm.api.Ddm2EmdCrosswalk.EmdCheck;
+import nl.knaw.dans.pf.language.emd.EasyMetadata;
+import nl.knaw.dans.pf.language.emd.binding.EmdMarshaller;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkException;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkListener;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
+import nl.knaw.dans.pf.language.xml.exc.XMLSerializationException;
+
+/**
+ * Converts DDM files into EMD files in parallel and reports the throughput, see {@link #USAGE}. A single JVM converts all files, so the startup cost and
+ * the compilation of the schemas are paid once.
+ */
+public class Ddm2EmdConverter {
+    /** Replaces the .xml extension of an input file to name its output, files with this suffix are not taken as input. */
+    public static final String EMD_SUFFIX = ".emd.xml";
+
+    // @formatter:off
+    static final String USAGE = "usage: Ddm2EmdConverter [options] (file|directory)...\n" +
+            "  -t <threads>   number of conversions in parallel, by default the number of processors\n" +
+            "  -n             no validation of the DDM against its XSD\n" +
+            "  -o <directory> writes the EMD files into the directory, mirroring the layout below each input directory,\n" +
+            "                 by default each EMD file is written next to its DDM file\n" +
+            "  -l <file>      also converts the DDM files listed in the file, one per line\n" +
+            "directories are searched for *.xml files, except *" + EMD_SUFFIX + " files";
+    // @formatter:on
+
+    private final List<Path> inputs = new ArrayList<Path>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean validate = true;
+    private Path outputDirectory;
+
+    /**
+     * @param args
+     *        see {@link #USAGE}
+     * @throws IllegalArgumentException
+     *         if the arguments do not match the usage
+     * @throws IOException
+     *         if a list file can not be read
+     */
+    public Ddm2EmdConverter(final String... args) throws IllegalArgumentException, IOException {
+        for (int i = 0; i < args.length; i++) {
+            if ("-t".equals(args[i]))
+                threads = toThreads(valueOf(args, ++i));
+            else if ("-n".equals(args[i]))
+                validate = false;
+            else if ("-o".equals(args[i]))
+                outputDirectory = Paths.get(valueOf(args, ++i));
+            else if ("-l".equals(args[i])) {
+                for (final String line : Files.readAllLines(Paths.get(valueOf(args, ++i)), StandardCharsets.UTF_8))
+                    if (!line.trim().isEmpty())
+                        inputs.add(Paths.get(line.trim()));
+            } else if (args[i].startsWith("-"))
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            else
+                inputs.add(Paths.get(args[i]));
+        }
+        if (inputs.isEmpty())
+            throw new IllegalArgumentException("no input");
+    }
+
+    private static String valueOf(final String[] args, final int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("no value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int toThreads(final String value) {
+        final int threads;
+        try {
+            threads = Integer.parseInt(value);
+        }
+        catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("not a number of threads: " + value);
+        }
+        if (threads < 1)
+            throw new IllegalArgumentException("at least one thread is required");
+        return threads;
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final Ddm2EmdConverter converter;
+        try {
+            converter = new Ddm2EmdConverter(args);
+        }
+        catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        final Report report = converter.convert(System.err);
+        System.out.println(report);
+        System.exit(report.getConverted() == report.getDocuments() ? 0 : 1);
+    }
+
+    /**
+     * Converts all input files. A file that can not be converted does not stop the others, nor does a directory that can not be read.
+     * 
+     * @param log
+     *        receives the notifications about each file that is not converted
+     * @return the outcome
+     * @throws InterruptedException
+     */
+    public Report convert(final PrintStream log) throws InterruptedException {
+        final Ddm2EmdCrosswalk crosswalk = validate ? new Ddm2EmdCrosswalk() : new Ddm2EmdCrosswalk(null);
+        // the EMD is marshalled anyway to write it
+        crosswalk.setEmdCheck(EmdCheck.SKIP);
+        final Report report = new Report();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final InputFiles files = new InputFiles(report, log);
+        try {
+            final long start = System.nanoTime();
+            crosswalk.createFrom(iterable(files), executor, new CrosswalkListener<EasyMetadata>() {
+                @Override
+                public void onResult(final Path path, final CrosswalkResult<EasyMetadata> result) {
+                    if (!result.passed()) {
+                        report.invalid.incrementAndGet();
+                        log.print(path + "\n" + result.getMessages());
+                        return;
+                    }
+                    final long writeStart = System.nanoTime();
+                    try {
+                        write(result.getTarget(), outputOf(path));
+                    }
+                    catch (final IOException e) {
+                        onFailure(path, new CrosswalkException("could not write: " + e.getMessage(), e));
+                        return;
+                    }
+                    catch (final XMLSerializationException e) {
+                        report.invalid.incrementAndGet();
+                        log.println(path + "\nresulting Easy Meta Data is invalid: " + e.getMessage());
+                        return;
+                    }
+                    final long nanos = System.nanoTime() - writeStart;
+                    report.latencies.record(nanos + result.getNanos(Phase.VALIDATION) + result.getNanos(Phase.CROSSWALK) + result.getNanos(Phase.CHECK));
+                    report.converted.incrementAndGet();
+                }
+
+                @Override
+                public void onFailure(final Path path, final CrosswalkException e) {
+                    report.failed.incrementAndGet();
+                    log.println(path + "\n" + e.getMessage());
+                }
+            });
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+        finally {
+            files.close();
+            executor.shutdown();
+        }
+        return report;
+    }
+
+    private static boolean isDdm(final Path path) {
+        final String name = path.getFileName().toString();
+        return name.endsWith(".xml") && !name.endsWith(EMD_SUFFIX) && Files.isRegularFile(path);
+    }
+
+    /**
+     * Walks the input directories lazily. An entry that can not be read is counted as failed and skipped, so the files found so far are still converted
+     * and waited for.
+     */
+    private final class InputFiles implements Iterator<Path> {
+        private final Report report;
+        private final PrintStream log;
+        private final Iterator<Path> remaining = inputs.iterator();
+        private Stream<Path> walk;
+        private Iterator<Path> walking;
+        private Path next;
+
+        InputFiles(final Report report, final PrintStream log) {
+            this.report = report;
+            this.log = log;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (walking != null)
+                    walkNext();
+                else if (remaining.hasNext())
+                    start(remaining.next());
+                else
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            final Path path = next;
+            next = null;
+            return path;
+        }
+
+        private void start(final Path input) {
+            if (!Files.isDirectory(input)) {
+                next = input;
+                return;
+            }
+            try {
+                walk = Files.walk(input);
+                walking = walk.iterator();
+            }
+            catch (final IOException e) {
+                skip(e);
+            }
+        }
+
+        private void walkNext() {
+            try {
+                if (!walking.hasNext()) {
+                    close();
+                    return;
+                }
+                final Path path = walking.next();
+                if (isDdm(path))
+                    next = path;
+            }
+            catch (final UncheckedIOException e) {
+                // the walk resumes after the entry it could not read
+                skip(e.getCause());
+            }
+        }
+
+        private void skip(final IOException e) {
+            report.failed.incrementAndGet();
+            log.println("could not read: " + e.getMessage());
+        }
+
+        void close() {
+            if (walk != null)
+                walk.close();
+            walk = null;
+            walking = null;
+        }
+    }
+
+    private static Iterable<Path> iterable(final Iterator<Path> iterator) {
+        return new Iterable<Path>() {
+            private boolean iterated;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated)
+                    throw new IllegalStateException("the files can be iterated only once");
+                iterated = true;
+                return iterator;
+            }
+        };
+    }
+
+    /**
+     * @param input
+     *        a DDM file
+     * @return where the EMD file of the input is written
+     */
+    Path outputOf(final Path input) {
+        final String name = input.getFileName().toString();
+        final String emdName = (name.endsWith(".xml") ? name.substring(0, name.length() - 4) : name) + EMD_SUFFIX;
+        if (outputDirectory == null)
+            return input.resolveSibling(emdName);
+        for (final Path root : inputs) {
+            if (Files.isDirectory(root) && input.startsWith(root))
+                return outputDirectory.resolve(root.relativize(input)).resolveSibling(emdName);
+        }
+        return outputDirectory.resolve(emdName);
+    }
+
+    private static void write(final EasyMetadata emd, final Path file) throws IOException, XMLSerializationException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        final OutputStream out = Files.newOutputStream(file);
+        try {
+            out.write(new EmdMarshaller(emd).getXmlByteArray());
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * The outcome of a conversion, latencies include validation, crosswalk and writing the EMD file. Latencies are kept in a histogram, so the report
+     * takes the same memory for any number of documents.
+     */
+    public static final class Report {
+        private final AtomicInteger converted = new AtomicInteger();
+        private final AtomicInteger invalid = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final Latencies latencies = new Latencies();
+        private long elapsedNanos;
+
+        public int getDocuments() {
+            return converted.get() + invalid.get() + failed.get();
+        }
+
+        public int getConverted() {
+            return converted.get();
+        }
+
+        /** @return the number of documents with errors or an EMD that could not be marshalled */
+        public int getInvalid() {
+            return invalid.get();
+        }
+
+        /** @return the number of documents that could not be read or written */
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public double getDocumentsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getDocuments() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * @param percentage
+         *        between 0 and 100
+         * @return the latency of a converted document in nanoseconds, -1 if no document was converted
+         */
+        public long getLatency(final double percentage) {
+            return latencies.percentile(percentage);
+        }
+
+        @Override
+        public String toString() {
+            final String counts = String.format(Locale.ROOT, "%d documents in %.1f s, %.1f documents/s%nconverted %d, invalid %d, failed %d", getDocuments(),
+                    elapsedNanos / 1e9, getDocumentsPerSecond(), getConverted(), getInvalid(), getFailed());
+            if (latencies.count() == 0)
+                return counts;
+            return counts + String.format(Locale.ROOT, "%nlatency ms p50 %.1f, p90 %.1f, p99 %.1f, max %.1f", millis(50), millis(90), millis(99), millis(100));
+        }
+
+        private double millis(final double percentage) {
+            return getLatency(percentage) / 1e6;
+        }
+    }
+
+    /**
+     * A histogram of nanoseconds with 16 buckets per power of two, a percentile is at most 1/16 above the recorded value. Values below 16 and the maximum
+     * are exact.
+     */
+    static final class Latencies {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BITS) * SUB_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(final long nanos) {
+            final long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value))
+                current = max.get();
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        /** nearest rank, -1 if nothing was recorded */
+        long percentile(final double percentage) {
+            final long total = count.get();
+            if (total == 0)
+                return -1;
+            final long rank = Math.min(total, Math.max(1, (long) Math.ceil(percentage / 100 * total)));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length(); bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank)
+                    return Math.min(max.get(), upperBoundOf(bucket));
+            }
+            return max.get();
+        }
+
+        static int bucketOf(final long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+            final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBoundOf(final int bucket) {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+            final int shift = bucket / SUB_BUCKETS - 1;
+            final long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+        }
+    }
+}
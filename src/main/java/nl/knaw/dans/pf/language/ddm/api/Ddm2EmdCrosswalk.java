@@ -15,14 +15,40 @@
  */
 package nl.knaw.dans.pf.language.ddm.api;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import nl.knaw.dans.pf.language.emd.EasyMetadata;
 import nl.knaw.dans.pf.language.emd.binding.EasyMetadataFactory;
 import nl.knaw.dans.pf.language.emd.binding.EmdMarshaller;
 import nl.knaw.dans.pf.language.emd.types.ApplicationSpecific.MetadataFormat;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkCache;
 import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkException;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkFeed;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkListener;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkSource;
 import nl.knaw.dans.pf.language.xml.crosswalk.Crosswalker;
+import nl.knaw.dans.pf.language.xml.crosswalk.Crosswalker.ValidationMode;
+import nl.knaw.dans.pf.language.xml.crosswalk.SchemaCache;
+import nl.knaw.dans.pf.language.xml.crosswalk.SchemaProvider;
 import nl.knaw.dans.pf.language.xml.exc.XMLSerializationException;
 import nl.knaw.dans.pf.language.xml.validation.AbstractValidator2;
 import nl.knaw.dans.pf.language.xml.validation.XMLErrorHandler;
@@ -32,10 +58,35 @@ import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+/**
+ * Creates {@link EasyMetadata} from DDM. The createResultFrom methods may be called concurrently on a single instance, each call reports its own
+ * notifications and the time spent per phase, the createFromAsync methods return a future of such a result and the validate methods only a verdict. The
+ * createFrom methods may be called concurrently as well, they also report to the deprecated shared {@link XMLErrorHandler}, which keeps the latest
+ * notifications of all calls.
+ */
 public class Ddm2EmdCrosswalk extends Crosswalker<EasyMetadata> {
     private static final Logger logger = LoggerFactory.getLogger(Ddm2EmdCrosswalk.class);
 
+    /** Distinguishes cached verdicts from cached results. */
+    private static final String VERDICT = "verdict";
+
+    /** Limits the number of documents of a batch that wait for a thread. */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
     private AbstractValidator2 ddmValidator;
+    private volatile EmdCheck emdCheck = EmdCheck.MARSHAL;
+    private volatile CrosswalkCache<EasyMetadata> cache;
+    private volatile String cacheKey;
+
+    /** How the resulting EMD is checked for incomplete fields. */
+    public enum EmdCheck {
+        /** No check, for trusted pipelines. */
+        SKIP,
+        /** Inspects the EMD model for empty values, without marshalling. */
+        STRUCTURAL,
+        /** Marshals the EMD to XML, the most thorough and most expensive check. */
+        MARSHAL
+    }
 
     /** Creates an instance. */
     public Ddm2EmdCrosswalk() {
@@ -59,7 +110,7 @@ public class Ddm2EmdCrosswalk extends Crosswalker<EasyMetadata> {
      * 
      * @param file
      *        with XML content
-     * @return null if errors are reported by the {@link XMLErrorHandler}
+     * @return null if errors are reported about the document, the notifications are added to the {@link XMLErrorHandler}
      * @throws CrosswalkException
      */
     public EasyMetadata createFrom(final File file) throws CrosswalkException {
@@ -71,7 +122,7 @@ public class Ddm2EmdCrosswalk extends Crosswalker<EasyMetadata> {
      * 
      * @param file
      *        with XML content
-     * @return null if errors are reported by the {@link XMLErrorHandler}
+     * @return null if errors are reported about the document, the notifications are added to the {@link XMLErrorHandler}
      * @throws CrosswalkException
      */
     public EasyMetadata createFromValidated(final File file) throws CrosswalkException {
@@ -83,7 +134,7 @@ public class Ddm2EmdCrosswalk extends Crosswalker<EasyMetadata> {
      * 
      * @param xml
      *        the XML content
-     * @return null if errors are reported by the {@link XMLErrorHandler}
+     * @return null if errors are reported about the document, the notifications are added to the {@link XMLErrorHandler}
      * @throws CrosswalkException
      */
     public EasyMetadata createFrom(final String xml) throws CrosswalkException {
@@ -95,36 +146,599 @@ public class Ddm2EmdCrosswalk extends Crosswalker<EasyMetadata> {
      * 
      * @param xml
      *        the XML content
-     * @return null if errors are reported by the {@link XMLErrorHandler}
+     * @return null if errors are reported about the document, the notifications are added to the {@link XMLErrorHandler}
      * @throws CrosswalkException
      */
     public EasyMetadata createFromValidated(final String xml) throws CrosswalkException {
         return validateEMD(walk(null, xml, newTarget()));
     }
 
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param file
+     *        with XML content
+     * @return the object, null if errors are reported, and the notifications of this call
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> createResultFrom(final File file) throws CrosswalkException {
+        return createResultFrom(file.toPath(), ddmValidator);
+    }
+
+    /**
+     * Creates an object assuming validation against an XSD has been done.
+     * 
+     * @param file
+     *        with XML content
+     * @return the object, null if errors are reported, and the notifications of this call
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> createResultFromValidated(final File file) throws CrosswalkException {
+        return createResultFrom(file.toPath(), null);
+    }
+
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param xml
+     *        the XML content
+     * @return the object, null if errors are reported, and the notifications of this call
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> createResultFrom(final String xml) throws CrosswalkException {
+        return createResultFrom(xml, ddmValidator);
+    }
+
+    /**
+     * Creates an object assuming validation against an XSD has been done.
+     * 
+     * @param xml
+     *        the XML content
+     * @return the object, null if errors are reported, and the notifications of this call
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> createResultFromValidated(final String xml) throws CrosswalkException {
+        return createResultFrom(xml, null);
+    }
+
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param path
+     *        with XML content, memory mapped if larger than the {@link #getMemoryMapThreshold()}
+     * @return null if errors are reported about the document, the notifications are added to the {@link XMLErrorHandler}
+     * @throws CrosswalkException
+     */
+    public EasyMetadata createFrom(final Path path) throws CrosswalkException {
+        return validateEMD(walk(ddmValidator, CrosswalkSource.of(path, getMemoryMapThreshold()), newTarget()));
+    }
+
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param inputStream
+     *        with XML content, closed when done
+     * @return null if errors are reported about the document, the notifications are added to the {@link XMLErrorHandler}
+     * @throws CrosswalkException
+     */
+    public EasyMetadata createFrom(final InputStream inputStream) throws CrosswalkException {
+        return validateEMD(walk(ddmValidator, CrosswalkSource.of(inputStream), newTarget()));
+    }
+
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param channel
+     *        with XML content, closed when done
+     * @return null if errors are reported about the document, the notifications are added to the {@link XMLErrorHandler}
+     * @throws CrosswalkException
+     */
+    public EasyMetadata createFrom(final ReadableByteChannel channel) throws CrosswalkException {
+        return validateEMD(walk(ddmValidator, CrosswalkSource.of(channel), newTarget()));
+    }
+
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param path
+     *        with XML content, memory mapped if larger than the {@link #getMemoryMapThreshold()}
+     * @return the object, null if errors are reported, and the notifications of this call
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> createResultFrom(final Path path) throws CrosswalkException {
+        return createResultFrom(path, ddmValidator);
+    }
+
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param inputStream
+     *        with XML content, closed when done
+     * @return the object, null if errors are reported, and the notifications of this call
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> createResultFrom(final InputStream inputStream) throws CrosswalkException {
+        final CrosswalkCache<EasyMetadata> current = cache;
+        final String version = cacheVersion(current, ddmValidator, emdCheck.name(), getValidationMode());
+        if (version == null)
+            return validateEMD(crosswalk(ddmValidator, CrosswalkSource.of(inputStream), newTarget()));
+        final byte[] xml = readAll(inputStream);
+        return createResultFrom(current, CrosswalkCache.key(xml, version), CrosswalkSource.of(xml), ddmValidator);
+    }
+
+    /**
+     * Creates an object after validation against an XSD.
+     * 
+     * @param channel
+     *        with XML content, closed when done
+     * @return the object, null if errors are reported, and the notifications of this call
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> createResultFrom(final ReadableByteChannel channel) throws CrosswalkException {
+        return createResultFrom(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Starts the creation of an object from XML that arrives in chunks, validated against an XSD while feeding. No thread waits for the next chunk:
+     * {@link CrosswalkFeed#getTarget()} completes with the object, or null if errors are reported, once the root element closes.
+     * 
+     * @return the feed to pass the chunks to
+     * @throws CrosswalkException
+     *         if the XSD is not available
+     * @throws IllegalArgumentException
+     *         if the validator passed to the constructor can't validate while feeding
+     */
+    public CrosswalkFeed<EasyMetadata> createFeed() throws CrosswalkException, IllegalArgumentException {
+        return feed(ddmValidator, newTarget(), new CrosswalkFeed.Completion<EasyMetadata>() {
+            @Override
+            public CrosswalkResult<EasyMetadata> complete(final CrosswalkResult<EasyMetadata> result) throws CrosswalkException {
+                return validateEMD(result);
+            }
+        });
+    }
+
+    /**
+     * Checks a document against the XSD and the rules of the crosswalk, like DAI check digits, date ranges and vocabularies, without keeping an object.
+     * Validation and crosswalk share a single pass, the resulting object is neither checked nor marshalled. The verdict is cached by a
+     * {@link #setCache(CrosswalkCache) cache}, if any.
+     * 
+     * @param path
+     *        with XML content
+     * @return the notifications, {@link CrosswalkResult#passed()} tells whether the document would be accepted by {@link #createResultFrom(Path)} except
+     *         for the check of the resulting object
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> validate(final Path path) throws CrosswalkException {
+        final CrosswalkCache<EasyMetadata> current = cache;
+        final String version = cacheVersion(current, ddmValidator, VERDICT, ValidationMode.SINGLE_PASS);
+        if (version == null)
+            return validate(CrosswalkSource.of(path, getMemoryMapThreshold()));
+        final byte[] xml;
+        try {
+            xml = Files.readAllBytes(path);
+        }
+        catch (final IOException e) {
+            throw new CrosswalkException("could not read: " + e.getMessage(), e);
+        }
+        return validate(current, CrosswalkCache.key(xml, version), CrosswalkSource.of(xml));
+    }
+
+    /**
+     * Checks a document without keeping an object, see {@link #validate(Path)}.
+     * 
+     * @param xml
+     *        the XML content
+     * @return the notifications, see {@link #validate(Path)}
+     * @throws CrosswalkException
+     */
+    public CrosswalkResult<EasyMetadata> validate(final String xml) throws CrosswalkException {
+        final CrosswalkCache<EasyMetadata> current = cache;
+        final String version = cacheVersion(current, ddmValidator, VERDICT, ValidationMode.SINGLE_PASS);
+        if (version == null)
+            return validate(CrosswalkSource.of(xml));
+        return validate(current, CrosswalkCache.key(xml, version), CrosswalkSource.of(xml));
+    }
+
+    private CrosswalkResult<EasyMetadata> validate(final CrosswalkCache<EasyMetadata> cache, final CrosswalkCache.Key key, final CrosswalkSource source)
+            throws CrosswalkException
+    {
+        final CrosswalkResult<EasyMetadata> cached = cache.get(key);
+        if (cached != null)
+            return cached;
+        final CrosswalkResult<EasyMetadata> verdict = validate(source);
+        cache.put(key, verdict);
+        return verdict;
+    }
+
+    private CrosswalkResult<EasyMetadata> validate(final CrosswalkSource source) throws CrosswalkException {
+        return crosswalk(ddmValidator, source, newTarget(), ValidationMode.SINGLE_PASS).withoutTarget();
+    }
+
+    /**
+     * Creates an object after validation against an XSD, on a virtual thread if the runtime supports them.
+     * 
+     * @param path
+     *        with XML content, memory mapped if larger than the {@link #getMemoryMapThreshold()}
+     * @return completes with the object, null if errors are reported, and the notifications of this call, or exceptionally with a {@link CrosswalkException}.
+     *         Cancel with mayInterruptIfRunning to stop a running crosswalk.
+     */
+    public CompletableFuture<CrosswalkResult<EasyMetadata>> createFromAsync(final Path path) {
+        return createFromAsync(path, null);
+    }
+
+    /**
+     * Creates an object after validation against an XSD, on a thread of the executor.
+     * 
+     * @param path
+     *        with XML content, memory mapped if larger than the {@link #getMemoryMapThreshold()}
+     * @param executor
+     *        optional, see {@link #createFromAsync(Path)} for the default
+     * @return see {@link #createFromAsync(Path)}
+     * @throws RejectedExecutionException
+     *         if the executor does not accept the crosswalk
+     */
+    public CompletableFuture<CrosswalkResult<EasyMetadata>> createFromAsync(final Path path, final Executor executor) throws RejectedExecutionException {
+        return async(new Callable<CrosswalkResult<EasyMetadata>>() {
+            @Override
+            public CrosswalkResult<EasyMetadata> call() throws CrosswalkException {
+                return createResultFrom(path);
+            }
+        }, executor);
+    }
+
+    /**
+     * Creates an object after validation against an XSD, on a virtual thread if the runtime supports them.
+     * 
+     * @param xml
+     *        the XML content
+     * @return see {@link #createFromAsync(Path)}
+     */
+    public CompletableFuture<CrosswalkResult<EasyMetadata>> createFromAsync(final String xml) {
+        return createFromAsync(xml, null);
+    }
+
+    /**
+     * Creates an object after validation against an XSD, on a thread of the executor.
+     * 
+     * @param xml
+     *        the XML content
+     * @param executor
+     *        optional, see {@link #createFromAsync(Path)} for the default
+     * @return see {@link #createFromAsync(Path)}
+     * @throws RejectedExecutionException
+     *         if the executor does not accept the crosswalk
+     */
+    public CompletableFuture<CrosswalkResult<EasyMetadata>> createFromAsync(final String xml, final Executor executor) throws RejectedExecutionException {
+        return async(new Callable<CrosswalkResult<EasyMetadata>>() {
+            @Override
+            public CrosswalkResult<EasyMetadata> call() throws CrosswalkException {
+                return createResultFrom(xml);
+            }
+        }, executor);
+    }
+
+    /**
+     * Creates objects from a batch of documents, each after validation against an XSD. Uses a thread per available processor and blocks until all documents
+     * are processed.
+     * 
+     * @param paths
+     *        the documents, read lazily so a directory stream or <code>stream::iterator</code> will do
+     * @param listener
+     *        receives the outcome of each document
+     * @throws InterruptedException
+     */
+    public void createFrom(final Iterable<Path> paths, final CrosswalkListener<EasyMetadata> listener) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            createFrom(paths, executor, listener);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates objects from a batch of documents, each after validation against an XSD. Blocks until all documents are processed. Results are not retained,
+     * the number of documents handed to the executor is a few per thread of a {@link ThreadPoolExecutor} or {@link ForkJoinPool}, otherwise a few per
+     * available processor. A document that can not be processed does not affect the others.
+     * 
+     * @param paths
+     *        the documents, read lazily so a directory stream or <code>stream::iterator</code> will do
+     * @param executor
+     *        executes the crosswalk of each document
+     * @param listener
+     *        receives the outcome of each document, is called concurrently by the threads of the executor
+     * @throws InterruptedException
+     *         when interrupted the documents already handed to the executor still report to the listener
+     * @throws RejectedExecutionException
+     *         if the executor does not accept a document
+     */
+    public void createFrom(final Iterable<Path> paths, final Executor executor, final CrosswalkListener<EasyMetadata> listener) throws InterruptedException,
+            RejectedExecutionException
+    {
+        createFrom(paths, executor, IN_FLIGHT_PER_THREAD * threadsOf(executor), listener);
+    }
+
+    /**
+     * Creates objects from a batch of documents, each after validation against an XSD. Blocks until all documents are processed. Results are not retained.
+     * A document that can not be processed does not affect the others.
+     * 
+     * @param paths
+     *        the documents, read lazily so a directory stream or <code>stream::iterator</code> will do
+     * @param executor
+     *        executes the crosswalk of each document
+     * @param maxInFlight
+     *        the number of documents handed to the executor that are not yet processed, at least the number of threads of the executor to keep them busy
+     * @param listener
+     *        receives the outcome of each document, is called concurrently by the threads of the executor
+     * @throws InterruptedException
+     *         when interrupted the documents already handed to the executor still report to the listener
+     * @throws RejectedExecutionException
+     *         if the executor does not accept a document
+     * @throws IllegalArgumentException
+     *         if maxInFlight is less than one
+     */
+    public void createFrom(final Iterable<Path> paths, final Executor executor, final int maxInFlight, final CrosswalkListener<EasyMetadata> listener)
+            throws InterruptedException, RejectedExecutionException, IllegalArgumentException
+    {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight should be at least one");
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        for (final Path path : paths) {
+            inFlight.acquire();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            crosswalk(path, listener);
+                        }
+                        finally {
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+            catch (final RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+        // wait for the last documents
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    /** @return the number of threads of the executor if it tells, otherwise the number of available processors */
+    private static int threadsOf(final Executor executor) {
+        if (executor instanceof ThreadPoolExecutor && ((ThreadPoolExecutor) executor).getCorePoolSize() > 0)
+            return ((ThreadPoolExecutor) executor).getCorePoolSize();
+        if (executor instanceof ForkJoinPool)
+            return ((ForkJoinPool) executor).getParallelism();
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private void crosswalk(final Path path, final CrosswalkListener<EasyMetadata> listener) {
+        final CrosswalkResult<EasyMetadata> result;
+        try {
+            result = createResultFrom(path);
+        }
+        catch (final CrosswalkException e) {
+            listener.onFailure(path, e);
+            return;
+        }
+        catch (final RuntimeException e) {
+            // a bug in a handler should not stop the batch
+            logger.error("crosswalk failed for " + path, e);
+            listener.onFailure(path, new CrosswalkException("crosswalk failed: " + e.getMessage(), e));
+            return;
+        }
+        listener.onResult(path, result);
+    }
+
+    /** @return how the resulting EMD is checked, by default {@link EmdCheck#MARSHAL} */
+    public EmdCheck getEmdCheck() {
+        return emdCheck;
+    }
+
+    /**
+     * Change how the resulting EMD is checked for incomplete fields.
+     * 
+     * @param emdCheck
+     * @throws IllegalArgumentException
+     *         if emdCheck is null
+     */
+    public void setEmdCheck(final EmdCheck emdCheck) throws IllegalArgumentException {
+        if (emdCheck == null)
+            throw new IllegalArgumentException("emdCheck can not be null");
+        this.emdCheck = emdCheck;
+    }
+
+    /** @return null (the default) if results are not cached */
+    public CrosswalkCache<EasyMetadata> getCache() {
+        return cache;
+    }
+
+    /**
+     * Caches the results of the createResultFrom and validate methods, which includes the createFromAsync methods and batches. A stream or channel is read
+     * into memory to compute its key. A repeated crosswalk of an identical document then costs a hash and a copy of the object. The key includes a digest
+     * of the compiled schemas, the {@link #setCacheKey(String) cache key} and the settings that change the result, so a cache may be shared by instances.
+     * The createFrom methods are not cached, as they report to the shared {@link XMLErrorHandler}.
+     * 
+     * @param cache
+     *        null to stop caching
+     */
+    public void setCache(final CrosswalkCache<EasyMetadata> cache) {
+        this.cache = cache;
+    }
+
+    /** @return null (the default) if only the default validator and handler map can be cached */
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * Identifies the configuration of this instance in the keys of its {@link #setCache(CrosswalkCache) cache}. Required to cache the results of a
+     * non-default validator or handler map, instances that share a cache should have the same key only if their validators and handler maps give the same
+     * results.
+     * 
+     * @param cacheKey
+     *        null to cache only with the default validator and handler map
+     */
+    public void setCacheKey(final String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    private CrosswalkResult<EasyMetadata> createResultFrom(final Path path, final AbstractValidator2 validator) throws CrosswalkException {
+        final CrosswalkCache<EasyMetadata> current = cache;
+        final String version = cacheVersion(current, validator, emdCheck.name(), getValidationMode());
+        if (version == null)
+            return validateEMD(crosswalk(validator, CrosswalkSource.of(path, getMemoryMapThreshold()), newTarget()));
+        final byte[] xml;
+        try {
+            xml = Files.readAllBytes(path);
+        }
+        catch (final IOException e) {
+            throw new CrosswalkException("could not read: " + e.getMessage(), e);
+        }
+        return createResultFrom(current, CrosswalkCache.key(xml, version), CrosswalkSource.of(xml), validator);
+    }
+
+    private CrosswalkResult<EasyMetadata> createResultFrom(final String xml, final AbstractValidator2 validator) throws CrosswalkException {
+        final CrosswalkCache<EasyMetadata> current = cache;
+        final String version = cacheVersion(current, validator, emdCheck.name(), getValidationMode());
+        if (version == null)
+            return validateEMD(crosswalk(validator, xml, newTarget()));
+        return createResultFrom(current, CrosswalkCache.key(xml, version), CrosswalkSource.of(xml), validator);
+    }
+
+    private CrosswalkResult<EasyMetadata> createResultFrom(final CrosswalkCache<EasyMetadata> cache, final CrosswalkCache.Key key,
+            final CrosswalkSource source, final AbstractValidator2 validator) throws CrosswalkException
+    {
+        final CrosswalkResult<EasyMetadata> cached = cache.get(key);
+        if (cached != null)
+            return cached;
+        final CrosswalkResult<EasyMetadata> result = validateEMD(crosswalk(validator, source, newTarget()));
+        cache.put(key, result);
+        return result;
+    }
+
+    /**
+     * @param cache
+     * @param validator
+     * @param check
+     *        what happens after the crosswalk
+     * @param mode
+     *        how validation and crosswalk are combined
+     * @return what besides the content of a document determines its result, null if the result is not cached
+     */
+    private String cacheVersion(final CrosswalkCache<EasyMetadata> cache, final AbstractValidator2 validator, final String check, final ValidationMode mode) {
+        if (cache == null)
+            return null;
+        final boolean defaultValidator = validator == null || validator.getClass() == DDMValidator.class;
+        final String key = cacheKey;
+        if (key == null && (!defaultValidator || handlerMap != Ddm2EmdHandlerMap.getInstance())) {
+            logger.debug("not cached, a non-default validator or handler map requires a cache key");
+            return null;
+        }
+        final String schema = validator == null ? "unvalidated" : schemaDigest(validator);
+        if (schema == null && defaultValidator) {
+            logger.debug("not cached, the schemas are not available");
+            return null;
+        }
+        return key + "/" + schema + "/" + check + "/" + mode + "/" + getMaxErrors() + "/" + getMaxNotifications() + "/" + getLimits();
+    }
+
+    /** @return identifies the content of the compiled schemas, null if unknown */
+    private static String schemaDigest(final AbstractValidator2 validator) {
+        if (!(validator instanceof SchemaProvider))
+            return null;
+        try {
+            // the override directory of the SchemaCatalog may give other content for the same locations
+            return SchemaCache.getDigest(((SchemaProvider) validator).getSchema());
+        }
+        catch (final SAXException e) {
+            logger.debug("no schema digest: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] readAll(final InputStream inputStream) throws CrosswalkException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[8192];
+        try {
+            try {
+                int n;
+                while ((n = inputStream.read(chunk)) >= 0)
+                    buffer.write(chunk, 0, n);
+            }
+            finally {
+                inputStream.close();
+            }
+        }
+        catch (final IOException e) {
+            throw new CrosswalkException("could not read: " + e.getMessage(), e);
+        }
+        return buffer.toByteArray();
+    }
+
     private EasyMetadata newTarget() {
         return EasyMetadataFactory.newEasyMetadata(MetadataFormat.DEFAULT);
     }
 
+    private CrosswalkResult<EasyMetadata> validateEMD(final CrosswalkResult<EasyMetadata> result) throws CrosswalkException {
+        if (!result.passed())
+            return result;
+        final long start = System.nanoTime();
+        check(result.getTarget());
+        return result.withNanos(Phase.CHECK, System.nanoTime() - start);
+    }
+
+    @SuppressWarnings("deprecation")
     private EasyMetadata validateEMD(final EasyMetadata emd) throws CrosswalkException {
-        if (getXmlErrorHandler().getErrors().size() > 0 || getXmlErrorHandler().getFatalErrors().size() > 0)
+        if (emd == null)
             return null;
         try {
-            // incomplete fields may cause trouble
-            final String validatedXML = new EmdMarshaller(emd).getXmlString();
-            logger.debug(validatedXML);
+            check(emd);
             return emd;
         }
-        catch (final XMLSerializationException e) {
-            String msg = "resulting Easy Meta Data is invalid: ";
-            logger.error(msg, e);
+        catch (final CrosswalkException e) {
             try {
-                getXmlErrorHandler().error(new SAXParseException(msg + e.getMessage(), null));
+                getXmlErrorHandler().error(new SAXParseException(e.getMessage(), null));
             }
             catch (SAXException dummy) {
-                // wrap the original exception, do not re-wrap
-                throw new CrosswalkException(msg + e.getMessage(), e);
+                // the original exception is thrown anyway
+            }
+            throw e;
+        }
+    }
+
+    private void check(final EasyMetadata emd) throws CrosswalkException {
+        final String msg = "resulting Easy Meta Data is invalid: ";
+        switch (emdCheck) {
+        case SKIP:
+            break;
+        case STRUCTURAL:
+            final List<String> incompleteFields = EmdStructureCheck.findIncompleteFields(emd);
+            if (!incompleteFields.isEmpty()) {
+                logger.error(msg + incompleteFields);
+                throw new CrosswalkException(msg + "incomplete " + incompleteFields, null);
             }
+            break;
+        default:
+            marshal(emd, msg);
+        }
+    }
+
+    private static void marshal(final EasyMetadata emd, final String msg) throws CrosswalkException {
+        try {
+            // incomplete fields may cause trouble
+            final String validatedXML = new EmdMarshaller(emd).getXmlString();
+            if (logger.isDebugEnabled())
+                logger.debug(validatedXML);
+        }
+        catch (final XMLSerializationException e) {
+            logger.error(msg, e);
             throw new CrosswalkException(msg + e.getMessage(), e);
         }
     }
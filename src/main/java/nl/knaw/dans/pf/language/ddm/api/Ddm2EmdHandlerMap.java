@@ -83,7 +83,10 @@ import org.dom4j.DocumentException;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -91,18 +94,73 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
     private static final SkippedFieldHandler SKIPPED_FIELD_HANDLER = new SkippedFieldHandler(null);
     private static final CrosswalkHandler<EasyMetadata> NOT_YET_IMPLEMENTED = new SkippedFieldHandler("not yet configured/implemented");
     private static final Ddm2EmdHandlerMap INSTANCE = new Ddm2EmdHandlerMap();
-    private static Map<String, String> uri2prefix = initNameSpaceMap();
-    private static Map<String, CrosswalkHandler<EasyMetadata>> map;
 
     public static Ddm2EmdHandlerMap getInstance() {
         return INSTANCE;
     }
 
-    private static Map<String, String> initNameSpaceMap() {
-        final Map<String, String> map = new HashMap<String, String>();
-        for (final NameSpace ns : NameSpace.values())
-            map.put(ns.uri, ns.prefix);
-        return map;
+    /**
+     * Initialized by the first crosswalk, the class loader guarantees a single initialization. Note that a failure is not retried. The handlers are prototypes,
+     * each walk gets instances of its own.
+     */
+    private static final class Handlers {
+        /** keys: [type/ns:localName] see {@link Ddm2EmdHandlerMap#getKeys()} */
+        static final Map<String, CrosswalkHandler<EasyMetadata>> MAP;
+        /** the same content for dispatch without allocation: uri -> localName -> type -> handler */
+        static final Map<String, Map<String, ElementHandlers>> TABLE;
+        static final SAXException FAILURE;
+
+        static {
+            Map<String, CrosswalkHandler<EasyMetadata>> map = null;
+            SAXException failure = null;
+            try {
+                map = INSTANCE.createMap();
+            }
+            catch (final SAXException e) {
+                failure = e;
+            }
+            MAP = map;
+            TABLE = map == null ? null : toTable(map);
+            FAILURE = failure;
+        }
+    }
+
+    /** The handlers of an element by the local name of its xsi:type, an empty name for elements without type. */
+    private static final class ElementHandlers {
+        private String[] types = {};
+        private final List<CrosswalkHandler<EasyMetadata>> handlers = new ArrayList<CrosswalkHandler<EasyMetadata>>();
+
+        void put(final String type, final CrosswalkHandler<EasyMetadata> handler) {
+            types = Arrays.copyOf(types, types.length + 1);
+            types[types.length - 1] = type;
+            handlers.add(handler);
+        }
+
+        CrosswalkHandler<EasyMetadata> get(final int index) {
+            return handlers.get(index);
+        }
+
+        /**
+         * @param xsiType
+         *        null, a local name or a qualified name
+         * @return the index of the handler for the local name of the type, negative if not configured
+         */
+        int indexOf(final String xsiType) {
+            int start = 0;
+            int end = 0;
+            if (xsiType != null) {
+                start = xsiType.indexOf(':') + 1;
+                end = xsiType.indexOf(':', start);
+                if (end < 0)
+                    end = xsiType.length();
+            }
+            for (int i = 0; i < types.length; i++) {
+                final String type = types[i];
+                if (type.length() == end - start && (xsiType == null || xsiType.regionMatches(start, type, 0, type.length())))
+                    return i;
+            }
+            return -1;
+        }
     }
 
     /** no instantiation for a singleton */
@@ -110,71 +168,84 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
 
     /** TODO let test achieve this with mocking and make the class not public */
     public Set<String> getKeys() {
-        return map.keySet();
+        if (Handlers.MAP == null)
+            throw new IllegalStateException(Handlers.FAILURE.getMessage(), Handlers.FAILURE);
+        return Handlers.MAP.keySet();
     }
 
-    /** lazy initialization */
-    private Map<String, CrosswalkHandler<EasyMetadata>> getMap() throws SAXException {
-        if (map == null) {
-            // note that a recursive chain of handlers would require multiple instances of handlers
-            map = new HashMap<String, CrosswalkHandler<EasyMetadata>>();
-
-            // TODO by business ingester: dateAvalable in two year range, no PID no AIP-ID
-            putAudienceHandlers();
-            putAuthorHandlers();
-            putDateHandlers();
-            putRalationHandlers();
-            putAboutHandlers();
-            putMiscellaneousHandlers();
-
-            // avoid missing handler warnings
-            putHandledByChilds();
-            putNotImplementedHandlers();
-        }
+    private Map<String, CrosswalkHandler<EasyMetadata>> createMap() throws SAXException {
+        final Map<String, CrosswalkHandler<EasyMetadata>> map = new HashMap<String, CrosswalkHandler<EasyMetadata>>();
+
+        // TODO by business ingester: dateAvalable in two year range, no PID no AIP-ID
+        putAudienceHandlers(map);
+        putAuthorHandlers(map);
+        putDateHandlers(map);
+        putRalationHandlers(map);
+        putAboutHandlers(map);
+        putMiscellaneousHandlers(map);
+
+        // avoid missing handler warnings
+        putHandledByChilds(map);
+        putNotImplementedHandlers(map);
         return map;
     }
 
+    /** @param map with keys [type/ns:localName] */
+    private static Map<String, Map<String, ElementHandlers>> toTable(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
+        final Map<String, String> prefix2uri = new HashMap<String, String>();
+        for (final NameSpace ns : NameSpace.values())
+            prefix2uri.put(ns.prefix, ns.uri);
+        final Map<String, Map<String, ElementHandlers>> table = new HashMap<String, Map<String, ElementHandlers>>();
+        for (final Map.Entry<String, CrosswalkHandler<EasyMetadata>> entry : map.entrySet()) {
+            final String key = entry.getKey();
+            final int slash = key.indexOf('/');
+            final int colon = key.indexOf(':', slash);
+            final String uri = prefix2uri.get(key.substring(slash + 1, colon));
+            final String localName = key.substring(colon + 1);
+            if (!table.containsKey(uri))
+                table.put(uri, new HashMap<String, ElementHandlers>());
+            final Map<String, ElementHandlers> byLocalName = table.get(uri);
+            if (!byLocalName.containsKey(localName))
+                byLocalName.put(localName, new ElementHandlers());
+            byLocalName.get(localName).put(key.substring(0, slash), entry.getValue());
+        }
+        return table;
+    }
+
+    private static ElementHandlers getElementHandlers(final String uri, final String localName) throws SAXException {
+        if (Handlers.TABLE == null)
+            throw new SAXException("could not initialize handlers " + Handlers.FAILURE.getMessage(), Handlers.FAILURE);
+        final Map<String, ElementHandlers> byLocalName = Handlers.TABLE.get(uri);
+        if (byLocalName == null)
+            return null;
+        return byLocalName.get(localName);
+    }
+
     @Override
     public CrosswalkHandler<EasyMetadata> getHandler(final String uri, final String localName, final Attributes attributes) throws SAXException {
-        final String key = toHandlerKey(uri, localName, attributes);
-        return getMap().get(key);
+        final ElementHandlers handlers = getElementHandlers(uri, localName);
+        if (handlers == null)
+            return null;
+        final int i = handlers.indexOf(attributes.getValue(NameSpace.XSI.uri, "type"));
+        return i < 0 ? null : handlers.get(i);
     }
 
     @Override
     public boolean reportMissingHandler(final String uri, final String localName, final Attributes attributes) throws SAXException {
-        final String key = toHandlerKey(uri, localName, attributes);
-        return !getMap().containsKey(key);
-    }
-
-    /**
-     * @param uri
-     * @param localName
-     * @param attributes
-     * @return [type/ns:localName] where<br>
-     *         ns = translated to an internal name space prefix<br>
-     *         type = the local name of the type attribute
-     * @throws SAXException
-     *         if lazy initialization of the map fails
-     */
-    private String toHandlerKey(final String uri, final String localName, final Attributes attributes) throws SAXException {
-        final String element = uri2prefix.get(uri) + ":" + localName;
-
-        // fix name space prefix when the local names become ambiguous
-        final String type = toLocalName(attributes.getValue(NameSpace.XSI.uri, "type"));
-
-        return type + "/" + element;
+        final ElementHandlers handlers = getElementHandlers(uri, localName);
+        return handlers == null || handlers.indexOf(attributes.getValue(NameSpace.XSI.uri, "type")) < 0;
     }
 
     private Map<String, String> loadVocabulary(final String xsd) throws SAXException {
         try {
-            return new MapFromXSD(xsd).getEnum2appInfo();
+            return MapFromXSD.load(xsd).getEnum2appInfo();
         }
         catch (final DocumentException e) {
             throw new SAXException("could not load map [" + xsd + "] " + e.getMessage(), e);
         }
     }
 
-    private void putAudienceHandlers() throws SAXException {
+    private void putAudienceHandlers(final Map<String, CrosswalkHandler<EasyMetadata>> map) throws SAXException {
         final BasicStringHandler narcisHandler = new AudienceHandler(loadVocabulary(NameSpace.NARCIS_TYPE.xsd));
         map.put("/ddm:audience", narcisHandler);
         map.put("DisciplineType/dcterms:audience", narcisHandler);
@@ -183,7 +254,7 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
         map.put("/dcterms:educationLevel", audienceHandler);
     }
 
-    private void putAuthorHandlers() {
+    private void putAuthorHandlers(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
         final BasicStringHandler simpleCreatorHandler = new SimpleCreatorHandler();
         final BasicStringHandler simpleContributorHandler = new SimpleContributorHandler();
         map.put("/dc:creator", simpleCreatorHandler);
@@ -197,7 +268,7 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
         map.put("/dcx-dai:contributor", new DaiContributorHandler());
     }
 
-    private void putRalationHandlers() {
+    private void putRalationHandlers(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
         final BasicIdentifierHandler dcRelationHandler = new DcRelationHandler();
         map.put("/ddm:relation", dcRelationHandler);
         map.put("/dc:relation", dcRelationHandler);
@@ -220,7 +291,7 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
         // and add content to getTarget().getEmdRelation().getDcXXX
     }
 
-    private void putNotImplementedHandlers() {
+    private void putNotImplementedHandlers(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
         map.put("/dcterms:instructionalMethod", SKIPPED_FIELD_HANDLER);
         map.put("/dcterms:accrualMethod", SKIPPED_FIELD_HANDLER);
         map.put("/dcterms:accrualPolicy", SKIPPED_FIELD_HANDLER);
@@ -234,9 +305,12 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
         map.put("/dcterms:extent", SKIPPED_FIELD_HANDLER);
         map.put("/dcterms:abstract", SKIPPED_FIELD_HANDLER);
         map.put("/dcterms:tableOfContents", SKIPPED_FIELD_HANDLER);
+
+        // arbitrary content, none of the nested elements is looked up
+        map.put("/ddm:additional-xml", SKIPPED_FIELD_HANDLER);
     }
 
-    private void putDateHandlers() {
+    private void putDateHandlers(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
         // EasyMetadataImpl: EmdDate emdDate;
         final IsoDateHandler easCreatedHandler = new EasCreatedHandler();
         map.put("/ddm:created", easCreatedHandler);
@@ -274,16 +348,15 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
         map.put("W3CDTF/dcterms:date", easDateHandler);
     }
 
-    private void putHandledByChilds() {
+    private void putHandledByChilds(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
         map.put("/dcx-dai:organization", null);
         map.put("/dcx-dai:author", null);
         map.put("/ddm:dcmiMetadata", null);
         map.put("/ddm:profile", null);
         map.put("/ddm:DDM", null);
-        map.put("/ddm:additional-xml", null);
     }
 
-    private void putMiscellaneousHandlers() {
+    private void putMiscellaneousHandlers(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
         // 3-fold checks: maxDDM as generated by oXygen / EasyMetadataImpl fields / deposit pages
         // <ref-panelId> mainly from emd-view-definition in archaeology.xml and unspecified.xml
 
@@ -359,7 +432,7 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
         // EasyMetadataImpl: EmdType emdType;
     }
 
-    private void putAboutHandlers() {
+    private void putAboutHandlers(final Map<String, CrosswalkHandler<EasyMetadata>> map) {
         final BasicStringHandler dcCoverageHandler = new DcCoverageHandler();
         map.put("/dc:coverage", dcCoverageHandler);
         map.put("/dcterms:coverage", dcCoverageHandler);
@@ -389,15 +462,4 @@ public class Ddm2EmdHandlerMap implements CrosswalkHandlerMap<EasyMetadata> {
         // <ref-panelId>dc.subject.abr</ref-panelId>
         // EasyMetadataImpl: EmdSubject emdSubject;
     }
-
-    private String toLocalName(final String value) {
-        final String localName;
-        if (value == null)
-            localName = "";
-        else if (value.contains(":"))
-            localName = value.split(":")[1];
-        else
-            localName = value;
-        return localName;
-    }
 }
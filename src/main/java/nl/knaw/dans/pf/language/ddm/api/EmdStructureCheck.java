@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import nl.knaw.dans.pf.language.emd.EasyMetadata;
+import nl.knaw.dans.pf.language.emd.types.BasicString;
+import nl.knaw.dans.pf.language.emd.types.IsoDate;
+
+/**
+ * Finds the incomplete fields that would make the marshaller fail, without marshalling: empty entries in the lists of the containers, strings and ISO dates
+ * without value. Reads the fields of the model rather than calling its getters, which create missing containers and lists, so the check leaves the EMD as it
+ * is.
+ */
+final class EmdStructureCheck {
+    /** the fields to inspect, per class */
+    private static final ConcurrentMap<Class<?>, Field[]> CONTAINER_FIELDS = new ConcurrentHashMap<Class<?>, Field[]>();
+    private static final ConcurrentMap<Class<?>, Field[]> LIST_FIELDS = new ConcurrentHashMap<Class<?>, Field[]>();
+
+    /** no instantiation for a utility class */
+    private EmdStructureCheck() {}
+
+    /**
+     * @param emd
+     * @return a description of each incomplete field, empty if none
+     * @throws IllegalStateException
+     *         if the model can not be inspected
+     */
+    static List<String> findIncompleteFields(final EasyMetadata emd) throws IllegalStateException {
+        final List<String> incomplete = new ArrayList<String>();
+        for (final Field containerField : getFields(emd.getClass(), CONTAINER_FIELDS)) {
+            // a container that does not exist yet is empty
+            final Object container = read(containerField, emd);
+            if (container == null)
+                continue;
+            for (final Field listField : getFields(container.getClass(), LIST_FIELDS)) {
+                final List<?> values = (List<?>) read(listField, container);
+                if (values == null)
+                    continue;
+                for (final Object value : values) {
+                    if (isIncomplete(value))
+                        incomplete.add(nameOf(containerField) + "." + nameOf(listField));
+                }
+            }
+        }
+        return incomplete;
+    }
+
+    private static boolean isIncomplete(final Object value) {
+        if (value == null)
+            return true;
+        if (value instanceof BasicString)
+            return ((BasicString) value).getValue() == null;
+        if (value instanceof IsoDate)
+            return ((IsoDate) value).getValue() == null;
+        return false;
+    }
+
+    private static String nameOf(final Field field) {
+        return Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+    }
+
+    private static Field[] getFields(final Class<?> type, final ConcurrentMap<Class<?>, Field[]> cache) throws IllegalStateException {
+        Field[] fields = cache.get(type);
+        if (fields == null) {
+            fields = cache == LIST_FIELDS ? findListFields(type) : findContainerFields(type);
+            cache.putIfAbsent(type, fields);
+        }
+        return fields;
+    }
+
+    /** @return the field behind each getEmd... getter */
+    private static Field[] findContainerFields(final Class<?> type) throws IllegalStateException {
+        final List<Field> fields = new ArrayList<Field>();
+        for (final Method method : type.getMethods()) {
+            if (method.getParameterTypes().length != 0 || !method.getName().startsWith("getEmd") || Modifier.isStatic(method.getModifiers()))
+                continue;
+            final String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+            final Field field = findField(type, name, method.getReturnType());
+            if (field == null)
+                throw new IllegalStateException("can not inspect " + method + " without creating the container");
+            fields.add(field);
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    private static Field findField(final Class<?> type, final String name, final Class<?> fieldType) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(name) && fieldType.isAssignableFrom(field.getType()) && !Modifier.isStatic(field.getModifiers()))
+                    return accessible(field);
+            }
+        }
+        return null;
+    }
+
+    private static Field[] findListFields(final Class<?> type) throws IllegalStateException {
+        final List<Field> fields = new ArrayList<Field>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (List.class.isAssignableFrom(field.getType()) && !Modifier.isStatic(field.getModifiers()))
+                    fields.add(accessible(field));
+            }
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    private static Field accessible(final Field field) throws IllegalStateException {
+        try {
+            field.setAccessible(true);
+            return field;
+        }
+        catch (final SecurityException e) {
+            throw new IllegalStateException("can not inspect " + field, e);
+        }
+    }
+
+    private static Object read(final Field field, final Object object) throws IllegalStateException {
+        try {
+            return field.get(object);
+        }
+        catch (final IllegalAccessException e) {
+            throw new IllegalStateException("can not inspect " + field, e);
+        }
+    }
+}
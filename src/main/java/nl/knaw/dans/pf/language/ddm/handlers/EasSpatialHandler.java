@@ -68,7 +68,7 @@ public class EasSpatialHandler extends CrosswalkHandler<EasyMetadata> {
     @Override
     protected void finishElement(final String uri, final String localName) throws SAXException {
         if ("description".equals(localName))
-            description = getCharsSinceStart().trim();
+            description = getTrimmedChars().toString();
         else if ("pos".equals(localName))
             pos = createPoint();
         else if ("lowerCorner".equals(localName))
@@ -102,7 +102,7 @@ public class EasSpatialHandler extends CrosswalkHandler<EasyMetadata> {
         if (type != null)
             warning("ignored: not yet implemented");
 
-        final String[] coordinates = getCharsSinceStart().trim().split(" ");
+        final String[] coordinates = getTrimmedChars().toString().split(" ");
         if (coordinates.length < 2) {
             error("expected at least two coordinate numbers separated with a space");
             return null;
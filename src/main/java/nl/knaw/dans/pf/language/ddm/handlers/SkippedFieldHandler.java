@@ -27,10 +27,16 @@ public class SkippedFieldHandler extends CrosswalkHandler<EasyMetadata> {
         this.warn = string;
     }
 
+    /** Nothing of the element is used, not even for the warning. */
+    @Override
+    protected boolean skipsSubtree() {
+        return true;
+    }
+
     @Override
     protected void finishElement(final String uri, final String localName) throws SAXException {
         // in this case we might want qName of the endElement
         if (warn != null)
-            warning("skipped " + uri + " " + localName + " [" + warn + "]");
+            warning("skipped {} {} [{}]", uri, localName, warn);
     }
 }
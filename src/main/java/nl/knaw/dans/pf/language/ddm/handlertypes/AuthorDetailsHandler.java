@@ -30,23 +30,23 @@ public abstract class AuthorDetailsHandler extends DaiAuthorHandler {
         if ("author".equals(localName))
             logger.debug("collected: " + author.toString());
         else {
-            final String value = getCharsSinceStart().trim();
+            final CharSequence value = getTrimmedChars();
             if (value.length() == 0)
                 return;
             if ("initials".equals(localName))
-                author.setInitials(value);
+                author.setInitials(value.toString());
             else if ("surname".equals(localName))
-                author.setSurname(value);
+                author.setSurname(value.toString());
             else if ("DAI".equals(localName))
-                author.setEntityId(value, "DAI");
+                author.setEntityId(value.toString(), "DAI");
             else if ("titles".equals(localName))
-                author.setTitle(value);
+                author.setTitle(value.toString());
             else if ("name".equals(localName)/* part of organization */)
-                author.setOrganization(value);
+                author.setOrganization(value.toString());
             else if ("DAI".equals(localName))
-                setDAI(author, value); // TODO dai system as attribute?
+                setDAI(author, value.toString()); // TODO dai system as attribute?
             else if ("insertions".equals(localName))
-                author.setPrefix(value);
+                author.setPrefix(value.toString());
         }
     }
 }
@@ -24,10 +24,10 @@ import org.xml.sax.SAXException;
 
 public abstract class BasicDateHandler extends CrosswalkHandler<EasyMetadata> {
     protected BasicDate createDate(final String uri, final String localName) throws SAXException {
-        final String value = getCharsSinceStart().trim();
+        final CharSequence value = getTrimmedChars();
         if (value.length() != 0) {
             try {
-                return new BasicDate(value.trim());
+                return new BasicDate(value.toString());
             }
             catch (final InvalidLanguageTokenException e) {
                 error(e.getMessage());
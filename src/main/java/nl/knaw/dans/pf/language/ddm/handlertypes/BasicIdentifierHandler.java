@@ -24,10 +24,10 @@ import org.xml.sax.SAXException;
 
 public abstract class BasicIdentifierHandler extends CrosswalkHandler<EasyMetadata> {
     protected BasicIdentifier createIdentifier(final String uri, final String localName) throws SAXException {
-        final String value = getCharsSinceStart().trim();
+        final CharSequence value = getTrimmedChars();
         if (value.length() != 0) {
             try {
-                return new BasicIdentifier(value.trim());
+                return new BasicIdentifier(value.toString());
             }
             catch (final InvalidLanguageTokenException e) {
                 error(e.getMessage());
@@ -40,7 +40,7 @@ public abstract class BasicStringHandler extends CrosswalkHandler<EasyMetadata>
     }
 
     protected BasicString createBasicString(final String uri, final String localName) throws SAXException {
-        final String value = getCharsSinceStart().trim();
+        final CharSequence value = getTrimmedChars();
         if (value.length() == 0)
             return null;
         final BasicString basicString = new BasicString();
@@ -50,10 +50,10 @@ public abstract class BasicStringHandler extends CrosswalkHandler<EasyMetadata>
         if (schemeId != null)
             basicString.setSchemeId(schemeId);
         if (vocabulary == null)
-            basicString.setValue(value);
+            basicString.setValue(value.toString());
         else {
             try {
-                basicString.setValue(vocabulary.get(value));
+                basicString.setValue(vocabulary.get(value.toString()));
             }
             catch (final IllegalArgumentException e) {
                 error(e.getMessage());
@@ -28,12 +28,12 @@ import org.xml.sax.SAXException;
 
 public abstract class DaiAuthorHandler extends CrosswalkHandler<EasyMetadata> {
     protected Author createDaiAuthor(final String uri, final String localName) throws SAXException {
-        final String value = getCharsSinceStart().trim();
+        final CharSequence value = getTrimmedChars();
         final String attribute = getAttribute("", "DAI").trim();
         if (value.length() == 0 || attribute.length() == 0)
             return null;
         final Author author = new Author();
-        author.setSurname(value);
+        author.setSurname(value.toString());
         return setDAI(author, attribute);
     }
 
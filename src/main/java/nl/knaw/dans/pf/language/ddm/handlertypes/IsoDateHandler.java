@@ -35,17 +35,15 @@ public abstract class IsoDateHandler extends CrosswalkHandler<EasyMetadata> {
     }
 
     protected IsoDate createDate(final String uri, final String localName) throws SAXException {
-        final String value = getCharsSinceStart().trim();
+        final CharSequence value = getTrimmedChars();
         if (value.length() == 0)
             return null;
         final IsoDate isoDate = new IsoDate();
-        if (value != null && value.trim().length() > 0) {
-            try {
-                isoDate.setValueAsString(value.trim());
-            }
-            catch (final InvalidDateStringException e) {
-                error(e.getMessage());
-            }
+        try {
+            isoDate.setValueAsString(value.toString());
+        }
+        catch (final InvalidDateStringException e) {
+            error(e.getMessage());
         }
         return isoDate;
     }
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of crosswalk results, keyed by a hash of the XML and a version of whatever else determines the result. Targets are kept serialized: the
+ * size of an entry is known and each hit returns a deep copy, so a caller may change the target it receives. The least recently used results are evicted
+ * when the entries exceed the maximum number of bytes. Safe for concurrent use.
+ */
+public final class CrosswalkCache<T extends Serializable> {
+    private static final Logger logger = LoggerFactory.getLogger(CrosswalkCache.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** estimated bytes of an entry besides the serialized target */
+    private static final int ENTRY_OVERHEAD = 256;
+    private static final int NOTIFICATION_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry<T>> entries = new LinkedHashMap<Key, Entry<T>>(16, 0.75f, true);
+    /** not synchronized, a waiting virtual thread should not pin its carrier */
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** Identifies a document together with the configuration that crosswalks it. */
+    public static final class Key {
+        private final byte[] digest;
+        private final String version;
+        private final int hashCode;
+
+        private Key(final byte[] digest, final String version) {
+            this.digest = digest;
+            this.version = version;
+            this.hashCode = 31 * Arrays.hashCode(digest) + version.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return hashCode == other.hashCode && version.equals(other.version) && MessageDigest.isEqual(digest, other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final CrosswalkResult<T> result;
+        private final byte[] target;
+        private final long size;
+
+        Entry(final CrosswalkResult<T> result, final byte[] target) {
+            this.result = result;
+            this.target = target;
+            this.size = ENTRY_OVERHEAD + (target == null ? 0 : target.length) + NOTIFICATION_OVERHEAD * (long) result.getNotificationCount();
+        }
+    }
+
+    /**
+     * @param maxBytes
+     *        the estimated memory the cache may use, mostly serialized targets
+     * @throws IllegalArgumentException
+     *         if maxBytes is not positive
+     */
+    public CrosswalkCache(final long maxBytes) throws IllegalArgumentException {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes should be positive");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param xml
+     *        the content of a document as read by the crosswalk
+     * @param version
+     *        changes whenever something else than the content changes the result, like the handlers, the schema or the settings of the crosswalk
+     * @return the key of the document
+     */
+    public static Key key(final byte[] xml, final String version) {
+        return new Key(sha256().digest(xml), version);
+    }
+
+    /**
+     * @param xml
+     *        the content of a document as read by the crosswalk
+     * @param version
+     *        see {@link #key(byte[], String)}
+     * @return the key of the document
+     */
+    public static Key key(final String xml, final String version) {
+        return new Key(sha256().digest(xml.getBytes(UTF8)), "chars/" + version);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param key
+     * @return a copy of the cached result, null if not cached, see {@link CrosswalkResult#isCached()}
+     */
+    public CrosswalkResult<T> get(final Key key) {
+        final Entry<T> entry;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+        }
+        finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        // deserialize outside the lock
+        return entry.result.cachedWithTarget(entry.target == null ? null : this.<T> deserialize(entry.target));
+    }
+
+    /**
+     * Caches a copy of the result, unless its target can not be serialized or the result alone would exceed the maximum size.
+     * 
+     * @param key
+     * @param result
+     *        not changed by the cache, the caller may keep using it
+     */
+    public void put(final Key key, final CrosswalkResult<T> result) {
+        final byte[] target;
+        try {
+            target = result.getTarget() == null ? null : serialize(result.getTarget());
+        }
+        catch (final IOException e) {
+            logger.debug("not cached: {}", e.getMessage());
+            return;
+        }
+        final Entry<T> entry = new Entry<T>(result.withTarget(null), target);
+        if (entry.size > maxBytes)
+            return;
+        lock.lock();
+        try {
+            final Entry<T> previous = entries.put(key, entry);
+            if (previous != null)
+                bytes -= previous.size;
+            bytes += entry.size;
+            final Iterator<Map.Entry<Key, Entry<T>>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().getValue().size;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static byte[] serialize(final Object target) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(target);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <C> C deserialize(final byte[] target) {
+        try {
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(target));
+            return (C) in.readObject();
+        }
+        catch (final IOException e) {
+            // it was serialized by this cache
+            throw new IllegalStateException(e);
+        }
+        catch (final ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Removes all entries, the statistics are kept. */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            bytes = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** @return the estimated memory used by the entries */
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the number of cached results */
+    public int getSize() {
+        lock.lock();
+        try {
+            return entries.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "hits " + getHits() + ", misses " + getMisses() + ", evictions " + getEvictions() + ", size " + getSize() + ", bytes " + getBytes();
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The state of a single walk, shared by the handlers that take turns in receiving the events of one document. The handlers returned by the
+ * {@link CrosswalkHandlerMap} are prototypes: each walk handles the elements with instances of its own, so walks on different threads don't share any state.
+ */
+final class CrosswalkContext<T> {
+    private final T target;
+    private final XMLReader reader;
+    private final ValidatorHandler validatorHandler;
+    private final CrosswalkHandlerMap<T> handlerMap;
+    private final Map<CrosswalkHandler<T>, CrosswalkHandler<T>> instances = new IdentityHashMap<CrosswalkHandler<T>, CrosswalkHandler<T>>();
+    private final CrosswalkMetrics metrics;
+    private final SubtreeSkipper skipper = new SubtreeSkipper();
+    private Locator locator;
+
+    /** Discards the events of a skipped subtree at the cost of counting its depth, then returns control to the handler that skips it. */
+    private final class SubtreeSkipper extends DefaultHandler {
+        private CrosswalkHandler<T> handler;
+        private int depth;
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+            depth++;
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            if (--depth >= 0)
+                return;
+            final CrosswalkHandler<T> skipping = handler;
+            handler = null;
+            setContentHandler(skipping);
+            skipping.endElement(uri, localName, qName);
+        }
+    }
+
+    /**
+     * @param validatorHandler
+     *        if null the handlers receive the events directly from the reader
+     * @param metrics
+     *        null if this walk is not measured
+     */
+    CrosswalkContext(final T target, final XMLReader reader, final ValidatorHandler validatorHandler, final CrosswalkHandlerMap<T> handlerMap,
+            final CrosswalkMetrics metrics)
+    {
+        this.target = target;
+        this.metrics = metrics;
+        this.reader = reader;
+        this.validatorHandler = validatorHandler;
+        this.handlerMap = handlerMap;
+        if (validatorHandler != null)
+            reader.setContentHandler(validatorHandler);
+    }
+
+    T getTarget() {
+        return target;
+    }
+
+    CrosswalkHandlerMap<T> getHandlerMap() {
+        return handlerMap;
+    }
+
+    ErrorHandler getErrorHandler() {
+        return reader.getErrorHandler();
+    }
+
+    /** @return null if this walk is not measured */
+    CrosswalkMetrics getMetrics() {
+        return metrics;
+    }
+
+    Locator getLocator() {
+        return locator;
+    }
+
+    void setLocator(final Locator locator) {
+        this.locator = locator;
+    }
+
+    /** Switches control at the receiving end of the events: the validator if it takes part in the parse, otherwise the reader. */
+    void setContentHandler(final ContentHandler handler) {
+        if (validatorHandler == null)
+            reader.setContentHandler(handler);
+        else
+            validatorHandler.setContentHandler(handler);
+    }
+
+    /** Discards the events up to and including the end of the element started by the handler, it receives the end of the element. */
+    void skipSubtree(final CrosswalkHandler<T> handler) {
+        skipper.handler = handler;
+        skipper.depth = 0;
+        setContentHandler(skipper);
+    }
+
+    /** @return the instance of the prototype that handles elements during this walk */
+    CrosswalkHandler<T> instanceOf(final CrosswalkHandler<T> prototype) {
+        CrosswalkHandler<T> instance = instances.get(prototype);
+        if (instance == null) {
+            instance = prototype.newInstance();
+            instances.put(prototype, instance);
+        }
+        return instance;
+    }
+}
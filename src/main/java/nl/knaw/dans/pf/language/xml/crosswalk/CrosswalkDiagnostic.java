@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A notification about a document. Unlike a {@link SAXParseException} it has no stack trace and its message is only formatted when asked for, so handlers
+ * can report each skipped element at little cost. {@link #toException()} converts it for callers that need an exception.
+ */
+public final class CrosswalkDiagnostic {
+    private final Severity severity;
+    private final String systemId;
+    private final int lineNumber;
+    private final int columnNumber;
+    private final String pattern;
+    private final Object[] arguments;
+    private String message;
+    private SAXParseException exception;
+
+    /** The severities of the {@link org.xml.sax.ErrorHandler}. */
+    public enum Severity {
+        WARNING, ERROR, FATAL_ERROR
+    }
+
+    /**
+     * @param severity
+     * @param locator
+     *        optional, the position is copied as the locator moves on with the parse
+     * @param pattern
+     *        the message, each {} is replaced by the next argument
+     * @param arguments
+     */
+    CrosswalkDiagnostic(final Severity severity, final Locator locator, final String pattern, final Object... arguments) {
+        this.severity = severity;
+        this.systemId = locator == null ? null : locator.getSystemId();
+        this.lineNumber = locator == null ? -1 : locator.getLineNumber();
+        this.columnNumber = locator == null ? -1 : locator.getColumnNumber();
+        this.pattern = pattern;
+        this.arguments = arguments;
+    }
+
+    /** Wraps a notification of the parser or validator, {@link #toException()} returns the original. */
+    CrosswalkDiagnostic(final Severity severity, final SAXParseException exception) {
+        this.severity = severity;
+        this.systemId = exception.getSystemId();
+        this.lineNumber = exception.getLineNumber();
+        this.columnNumber = exception.getColumnNumber();
+        this.pattern = null;
+        this.arguments = null;
+        this.exception = exception;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public String getSystemId() {
+        return systemId;
+    }
+
+    /** @return -1 if not available */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /** @return -1 if not available */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /** @return the message, formatted by the first call */
+    public String getMessage() {
+        if (message == null)
+            message = exception != null && pattern == null ? exception.getMessage() : format(pattern, arguments);
+        return message;
+    }
+
+    /** @return an exception with the message and position of this notification, created by the first call */
+    public SAXParseException toException() {
+        if (exception == null)
+            exception = new SAXParseException(getMessage(), null, systemId, lineNumber, columnNumber);
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return severity + " [" + lineNumber + "," + columnNumber + "] " + getMessage();
+    }
+
+    private static String format(final String pattern, final Object[] arguments) {
+        if (pattern == null || arguments == null || arguments.length == 0)
+            return pattern;
+        final StringBuilder sb = new StringBuilder(pattern.length() + 16 * arguments.length);
+        int from = 0;
+        for (final Object argument : arguments) {
+            final int at = pattern.indexOf("{}", from);
+            if (at < 0)
+                break;
+            sb.append(pattern, from, at).append(argument);
+            from = at + 2;
+        }
+        return sb.append(pattern, from, pattern.length()).toString();
+    }
+}
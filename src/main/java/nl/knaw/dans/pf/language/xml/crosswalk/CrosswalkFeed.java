@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.ValidatorHandler;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+
+import com.fasterxml.aalto.AsyncByteArrayFeeder;
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+
+/**
+ * A crosswalk that receives the XML in chunks as they arrive, for example from a network connection. Each chunk is parsed as far as possible without
+ * blocking, the handlers receive the same SAX events as with a walk over a complete document. The result completes when the root element closes.
+ * <p>
+ * Calls to a feed must not overlap, though they may come from different threads. Dependent actions of the futures run on the thread that feeds the last
+ * chunk unless they are added with an async method.
+ */
+public final class CrosswalkFeed<T> {
+    private static final String PARSE_ERROR_MESSAGE = "could not parse: ";
+    private static final AsyncXMLInputFactory FACTORY = newFactory();
+
+    private final AsyncXMLStreamReader<AsyncByteArrayFeeder> stream = FACTORY.createAsyncForByteArray();
+    private final FeedReader reader = new FeedReader();
+    private final AttributesImpl attributes = new AttributesImpl();
+    private final Locator locator = new StreamLocator();
+    private final CompletableFuture<CrosswalkResult<T>> result = new CompletableFuture<CrosswalkResult<T>>();
+    private final CompletableFuture<T> target;
+    private final T emptyTarget;
+    private final NotificationCollector collector;
+    private final Completion<T> completion;
+    private int depth;
+
+    /** Post-processing of the result of a feed, for example a check of the target. */
+    public interface Completion<T> {
+        /**
+         * @param result
+         *        the result of the crosswalk
+         * @return the result to complete the feed with
+         * @throws CrosswalkException
+         *         completes the feed exceptionally
+         */
+        CrosswalkResult<T> complete(CrosswalkResult<T> result) throws CrosswalkException;
+    }
+
+    CrosswalkFeed(final T target, final ValidatorHandler validatorHandler, final CrosswalkHandlerMap<T> handlerMap, final CrosswalkMetrics metrics,
+            final NotificationCollector collector, final CrosswalkLimits limits, final Completion<T> completion)
+    {
+        this.emptyTarget = target;
+        this.collector = collector;
+        this.completion = completion;
+        this.target = result.thenApply(new Function<CrosswalkResult<T>, T>() {
+            @Override
+            public T apply(final CrosswalkResult<T> crosswalkResult) {
+                return crosswalkResult.getTarget();
+            }
+        });
+        reader.setErrorHandler(collector);
+        if (limits.isUnlimited()) {
+            // sets itself (or the validatorHandler in front of it) as ContentHandler of the reader passed into it
+            new CrosswalkHandler<T>(target, reader, validatorHandler, handlerMap, metrics);
+            return;
+        }
+
+        // the feed passes the events to the guard, the handlers switch behind it
+        final CrosswalkGuard guard = new CrosswalkGuard(null, limits);
+        guard.setErrorHandler(collector);
+        new CrosswalkHandler<T>(target, guard, validatorHandler, handlerMap, metrics);
+        reader.setContentHandler(guard);
+    }
+
+    private static AsyncXMLInputFactory newFactory() {
+        final AsyncXMLInputFactory factory = new InputFactoryImpl();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Parses the next chunk as far as possible. The bytes are processed before the method returns, so the caller may reuse the array.
+     * 
+     * @param bytes
+     *        the next chunk of the XML
+     * @param offset
+     *        of the chunk in the array
+     * @param length
+     *        of the chunk
+     * @return false if the result is complete, further chunks are ignored
+     */
+    public boolean feed(final byte[] bytes, final int offset, final int length) {
+        if (result.isDone())
+            return false;
+        final long start = System.nanoTime();
+        try {
+            stream.getInputFeeder().feedInput(bytes, offset, length);
+            parse(start);
+        }
+        catch (final XMLStreamException e) {
+            fail(e);
+        }
+        catch (final SAXException e) {
+            failOrAbort(e);
+        }
+        catch (final RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+        return !result.isDone();
+    }
+
+    /** Signals that no more chunks will arrive, completes the result exceptionally unless the root element was closed. */
+    public void end() {
+        if (result.isDone())
+            return;
+        stream.getInputFeeder().endOfInput();
+        try {
+            parse(System.nanoTime());
+            if (!result.isDone())
+                throw new XMLStreamException("premature end of file", stream.getLocation());
+        }
+        catch (final XMLStreamException e) {
+            fail(e);
+        }
+        catch (final SAXException e) {
+            failOrAbort(e);
+        }
+        catch (final RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** @return the target and the notifications of the crosswalk */
+    public CompletableFuture<CrosswalkResult<T>> getResult() {
+        return result;
+    }
+
+    /** @return the target, null if errors are reported */
+    public CompletableFuture<T> getTarget() {
+        return target;
+    }
+
+    /** @param start of the parse, added to the crosswalk time */
+    private void parse(final long start) throws XMLStreamException, SAXException {
+        while (!result.isDone()) {
+            switch (stream.next()) {
+            case AsyncXMLStreamReader.EVENT_INCOMPLETE:
+                collector.addNanos(Phase.CROSSWALK, start);
+                return;
+            case XMLStreamConstants.START_DOCUMENT:
+                reader.getContentHandler().setDocumentLocator(locator);
+                reader.getContentHandler().startDocument();
+                break;
+            case XMLStreamConstants.START_ELEMENT:
+                startElement();
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                endElement(start);
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+                reader.getContentHandler().characters(stream.getTextCharacters(), stream.getTextStart(), stream.getTextLength());
+                break;
+            case XMLStreamConstants.SPACE:
+                reader.getContentHandler().ignorableWhitespace(stream.getTextCharacters(), stream.getTextStart(), stream.getTextLength());
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                reader.getContentHandler().processingInstruction(stream.getPITarget(), stream.getPIData());
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                // only without a root element, reported by end()
+                return;
+            default:
+                // comments and DTD
+            }
+        }
+    }
+
+    private void startElement() throws SAXException {
+        final ContentHandler handler = reader.getContentHandler();
+        for (int i = 0; i < stream.getNamespaceCount(); i++)
+            handler.startPrefixMapping(nonNull(stream.getNamespacePrefix(i)), nonNull(stream.getNamespaceURI(i)));
+        attributes.clear();
+        for (int i = 0; i < stream.getAttributeCount(); i++) {
+            final String localName = stream.getAttributeLocalName(i);
+            attributes.addAttribute(nonNull(stream.getAttributeNamespace(i)), localName, qName(stream.getAttributePrefix(i), localName),
+                    stream.getAttributeType(i), stream.getAttributeValue(i));
+        }
+        depth++;
+        handler.startElement(nonNull(stream.getNamespaceURI()), stream.getLocalName(), qName(stream.getPrefix(), stream.getLocalName()), attributes);
+    }
+
+    private void endElement(final long start) throws SAXException {
+        final ContentHandler handler = reader.getContentHandler();
+        handler.endElement(nonNull(stream.getNamespaceURI()), stream.getLocalName(), qName(stream.getPrefix(), stream.getLocalName()));
+        for (int i = 0; i < stream.getNamespaceCount(); i++)
+            handler.endPrefixMapping(nonNull(stream.getNamespacePrefix(i)));
+        if (--depth == 0) {
+            reader.getContentHandler().endDocument();
+            collector.addNanos(Phase.CROSSWALK, start);
+            complete();
+        }
+    }
+
+    private void complete() {
+        CrosswalkResult<T> crosswalkResult = collector.toResult(emptyTarget);
+        try {
+            if (completion != null)
+                crosswalkResult = completion.complete(crosswalkResult);
+            result.complete(crosswalkResult);
+        }
+        catch (final CrosswalkException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void fail(final XMLStreamException e) {
+        final Location location = e.getLocation() == null ? stream.getLocation() : e.getLocation();
+        final SAXParseException parseException = new SAXParseException(e.getMessage(), null, null, location.getLineNumber(), location.getColumnNumber(), e);
+        try {
+            reader.getErrorHandler().fatalError(parseException);
+        }
+        catch (final SAXException ignored) {
+            // the collector already has it
+        }
+        fail((Exception) parseException);
+    }
+
+    private void failOrAbort(final SAXException e) {
+        if (collector.isAborted())
+            complete();
+        else
+            fail(e);
+    }
+
+    private void fail(final Exception e) {
+        result.completeExceptionally(new CrosswalkException(PARSE_ERROR_MESSAGE + e.getMessage(), e));
+    }
+
+    private static String qName(final String prefix, final String localName) {
+        if (prefix == null || prefix.length() == 0)
+            return localName;
+        return prefix + ":" + localName;
+    }
+
+    private static String nonNull(final String s) {
+        return s == null ? "" : s;
+    }
+
+    /** Reports the position in the chunks fed so far. */
+    private final class StreamLocator implements Locator {
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return null;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return stream.getLocation().getLineNumber();
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return stream.getLocation().getColumnNumber();
+        }
+    }
+
+    /** Holds the handlers the crosswalk switches between, the events come from the feed rather than from a parse. */
+    private static final class FeedReader implements XMLReader {
+        private ContentHandler contentHandler;
+        private ErrorHandler errorHandler;
+        private EntityResolver entityResolver;
+        private DTDHandler dtdHandler;
+
+        @Override
+        public boolean getFeature(final String name) throws SAXNotRecognizedException {
+            throw new SAXNotRecognizedException(name);
+        }
+
+        @Override
+        public void setFeature(final String name, final boolean value) throws SAXNotRecognizedException {
+            throw new SAXNotRecognizedException(name);
+        }
+
+        @Override
+        public Object getProperty(final String name) throws SAXNotRecognizedException {
+            throw new SAXNotRecognizedException(name);
+        }
+
+        @Override
+        public void setProperty(final String name, final Object value) throws SAXNotRecognizedException {
+            throw new SAXNotRecognizedException(name);
+        }
+
+        @Override
+        public void setEntityResolver(final EntityResolver resolver) {
+            this.entityResolver = resolver;
+        }
+
+        @Override
+        public EntityResolver getEntityResolver() {
+            return entityResolver;
+        }
+
+        @Override
+        public void setDTDHandler(final DTDHandler handler) {
+            this.dtdHandler = handler;
+        }
+
+        @Override
+        public DTDHandler getDTDHandler() {
+            return dtdHandler;
+        }
+
+        @Override
+        public void setContentHandler(final ContentHandler handler) {
+            this.contentHandler = handler;
+        }
+
+        @Override
+        public ContentHandler getContentHandler() {
+            return contentHandler;
+        }
+
+        @Override
+        public void setErrorHandler(final ErrorHandler handler) {
+            this.errorHandler = handler;
+        }
+
+        @Override
+        public ErrorHandler getErrorHandler() {
+            return errorHandler;
+        }
+
+        @Override
+        public void parse(final InputSource input) throws SAXNotSupportedException {
+            throw new SAXNotSupportedException("a feed is not parsed");
+        }
+
+        @Override
+        public void parse(final String systemId) throws SAXNotSupportedException {
+            throw new SAXNotSupportedException("a feed is not parsed");
+        }
+    }
+}
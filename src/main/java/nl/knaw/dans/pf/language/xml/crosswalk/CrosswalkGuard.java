@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Passes on the events of a parse as long as the document stays within its {@link CrosswalkLimits}. Checks each event before the next handler gets it, so
+ * a document that exceeds a limit stops the parse before any buffer grows beyond it.
+ */
+final class CrosswalkGuard extends XMLFilterImpl {
+    private final long maxTextLength;
+    private final long maxDepth;
+    private final long maxElements;
+    private final long maxAttributes;
+    private final long maxChars;
+    private Locator locator;
+    private long textLength;
+    private long depth;
+    private long elements;
+    private long attributes;
+    private long chars;
+
+    /**
+     * @param parent
+     *        the reader that produces the events, or null if they are passed to the guard otherwise
+     * @param limits
+     */
+    CrosswalkGuard(final XMLReader parent, final CrosswalkLimits limits) {
+        super(parent);
+        maxTextLength = bound(limits.getMaxTextLength());
+        maxDepth = bound(limits.getMaxDepth());
+        maxElements = bound(limits.getMaxElements());
+        maxAttributes = bound(limits.getMaxAttributes());
+        maxChars = bound(limits.getMaxChars());
+    }
+
+    private static long bound(final long limit) {
+        return limit < 0 ? Long.MAX_VALUE : limit;
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+        this.locator = locator;
+        super.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        textLength = depth = elements = attributes = chars = 0;
+        super.startDocument();
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+        if (++depth > maxDepth)
+            throw exceeded("element depth", maxDepth, qName);
+        if (++elements > maxElements)
+            throw exceeded("number of elements", maxElements, qName);
+        if ((attributes += atts.getLength()) > maxAttributes)
+            throw exceeded("number of attributes", maxAttributes, qName);
+        textLength = 0;
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        depth--;
+        super.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        checkText(length);
+        super.characters(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        checkText(length);
+        super.ignorableWhitespace(ch, start, length);
+    }
+
+    private void checkText(final int length) throws SAXParseException {
+        if ((textLength += length) > maxTextLength)
+            throw exceeded("text length of an element", maxTextLength, null);
+        if ((chars += length) > maxChars)
+            throw exceeded("number of characters", maxChars, null);
+    }
+
+    private SAXParseException exceeded(final String what, final long limit, final String qName) {
+        return new SAXParseException("document exceeds the limit of " + limit + " for the " + what + (qName == null ? "" : " at " + qName), locator);
+    }
+}
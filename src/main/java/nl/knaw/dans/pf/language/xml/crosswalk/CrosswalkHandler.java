@@ -15,26 +15,34 @@
  */
 package nl.knaw.dans.pf.language.xml.crosswalk;
 
+import javax.xml.validation.ValidatorHandler;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkDiagnostic.Severity;
+
 import org.xml.sax.Attributes;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
-import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
-public class CrosswalkHandler<T> extends DefaultHandler {
-    private T target;
-    private XMLReader reader;
-    private Locator locator;
-    private CrosswalkHandlerMap<T> handlerMap;
+public class CrosswalkHandler<T> extends DefaultHandler implements Cloneable {
+    private CrosswalkContext<T> context;
     private CrosswalkHandler<T> parentHandler;
 
-    private StringBuffer charsSinceStart = new StringBuffer();
+    /** reused for all elements of the walk, only accessed by the thread of the walk */
+    private StringBuilder charsSinceStart = new StringBuilder();
+    private TrimmedText trimmedChars = new TrimmedText(charsSinceStart);
     private Attributes attributes = null;
     private int level;
 
+    /** measurements of the current control cycle, only used if the walk is measured */
+    private long controlStart;
+    private long finishNanos;
+    private long charCount;
+
     /**
-     * Create a handler. It may receive control by the startElement of another instance and will return control by the endElement at the same level.
+     * Create a handler. It may receive control by the startElement of another instance and will return control by the endElement at the same level. An
+     * instance returned by a {@link CrosswalkHandlerMap} serves as prototype, the elements of a walk are handled by a {@link #newInstance()} of it.
      */
     public CrosswalkHandler() {}
 
@@ -47,47 +55,100 @@ public class CrosswalkHandler<T> extends DefaultHandler {
      * @param handlerMap
      */
     public CrosswalkHandler(final T target, final XMLReader reader, final CrosswalkHandlerMap<T> handlerMap) {
-        this.handlerMap = handlerMap;
-        takeControl(target, reader, null);
+        this(target, reader, null, handlerMap);
     }
 
-    private void takeControl(final T target, final XMLReader reader, final CrosswalkHandler<T> parentHandler) {
-        this.target = target;
-        this.reader = reader;
-        this.parentHandler = parentHandler;
-        this.reader.setContentHandler(this);
-        if (parentHandler != null) {
-            handlerMap = parentHandler.handlerMap;
+    /**
+     * Creates the root handler for a parse that validates and crosswalks in a single pass. The validatorHandler is assigned as ContentHandler to the reader,
+     * the handlers receive the events passed on by the validatorHandler.
+     * 
+     * @param target
+     * @param reader
+     * @param validatorHandler
+     *        if null the handlers receive the events directly from the reader
+     * @param handlerMap
+     */
+    public CrosswalkHandler(final T target, final XMLReader reader, final ValidatorHandler validatorHandler, final CrosswalkHandlerMap<T> handlerMap) {
+        this(target, reader, validatorHandler, handlerMap, null);
+    }
 
-            // only the root handler receives a location notification from the SAX parser
-            locator = parentHandler.locator;
+    /**
+     * @param metrics
+     *        null if the walk is not measured
+     */
+    CrosswalkHandler(final T target, final XMLReader reader, final ValidatorHandler validatorHandler, final CrosswalkHandlerMap<T> handlerMap,
+            final CrosswalkMetrics metrics)
+    {
+        takeControl(new CrosswalkContext<T>(target, reader, validatorHandler, handlerMap, metrics), null);
+    }
+
+    /**
+     * Creates the instance that handles the elements of a single walk. The default implementation is a shallow copy of this prototype. Subclasses with mutable
+     * fields that are not reinitialized by {@link #initFirstElement(String, String, Attributes)} should override to copy them.
+     * 
+     * @return a handler with the configuration of this one
+     */
+    @SuppressWarnings("unchecked")
+    protected CrosswalkHandler<T> newInstance() {
+        final CrosswalkHandler<T> instance;
+        try {
+            instance = (CrosswalkHandler<T>) clone();
+        }
+        catch (final CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
         }
+        instance.context = null;
+        instance.parentHandler = null;
+        instance.charsSinceStart = new StringBuilder();
+        instance.trimmedChars = new TrimmedText(instance.charsSinceStart);
+        instance.attributes = null;
+        instance.level = 0;
+        return instance;
+    }
+
+    private void takeControl(final CrosswalkContext<T> context, final CrosswalkHandler<T> parentHandler) {
+        this.context = context;
+        this.parentHandler = parentHandler;
+        context.setContentHandler(this);
+
         // clear what is left by a previous cycle
-        charsSinceStart.delete(0, charsSinceStart.length());
+        charsSinceStart.setLength(0);
         level = 0;
+        charCount = 0;
+        if (context.getMetrics() != null) {
+            finishNanos = 0;
+            controlStart = System.nanoTime();
+        }
     }
 
     private void returnControl() {
-        this.reader.setContentHandler(parentHandler);
-        this.target = null;
-        this.reader = null;
+        final CrosswalkMetrics metrics = context.getMetrics();
+        if (metrics != null)
+            metrics.record(getClass(), System.nanoTime() - controlStart, finishNanos, charCount);
+        context.setContentHandler(parentHandler);
+        this.context = null;
         parentHandler.level--;
         this.parentHandler = null;
     }
 
     @Override
     public final void startElement(final String uri, final String localName, final String qName, final Attributes attributes) throws SAXException {
-        charsSinceStart = new StringBuffer();
-        final CrosswalkHandler<T> handler = handlerMap.getHandler(uri, localName, attributes);
+        if (Thread.currentThread().isInterrupted())
+            throw new SAXException("interrupted at " + qName);
+        charsSinceStart.setLength(0);
+        final CrosswalkHandler<T> prototype = context.getHandlerMap().getHandler(uri, localName, attributes);
         level++;
-        if (handler != null) {
-            handler.takeControl(target, reader, this);
+        if (prototype != null) {
+            final CrosswalkHandler<T> handler = context.instanceOf(prototype);
+            handler.takeControl(context, this);
             handler.initFirstElement(uri, localName, attributes);
             handler.attributes = attributes;
+            if (handler.skipsSubtree())
+                context.skipSubtree(handler);
         } else {
             this.attributes = attributes;
-            if (parentHandler == null && handlerMap.reportMissingHandler(uri, localName, attributes))
-                warning("skipped " + qName + " at level:" + level);
+            if (parentHandler == null && context.getHandlerMap().reportMissingHandler(uri, localName, attributes))
+                warning("skipped {} at level:{}", qName, level);
         }
         initElement(uri, localName, attributes);
     }
@@ -98,6 +159,17 @@ public class CrosswalkHandler<T> extends DefaultHandler {
      */
     protected void initFirstElement(final String uri, final String localName, final Attributes attributes) throws SAXException {}
 
+    /**
+     * Tells whether the nested elements and the characters of the first element are of no interest to this handler. If so, they are discarded until the end
+     * of the first element, only {@link #initFirstElement(String, String, Attributes)} and {@link #finishElement(String, String)} are called and
+     * {@link #getCharsSinceStart()} remains empty. Validation in the same pass is not affected.
+     * 
+     * @return false by default
+     */
+    protected boolean skipsSubtree() {
+        return false;
+    }
+
     /**
      * Receive notification of the start of the any element treated by this handler. See also the final startElement
      */
@@ -105,7 +177,13 @@ public class CrosswalkHandler<T> extends DefaultHandler {
 
     @Override
     public final void endElement(final String uri, final String localName, final String qName) throws SAXException {
-        finishElement(uri, localName);
+        if (context.getMetrics() == null)
+            finishElement(uri, localName);
+        else {
+            final long start = System.nanoTime();
+            finishElement(uri, localName);
+            finishNanos += System.nanoTime() - start;
+        }
         if (--level < 0)
             returnControl();
     }
@@ -118,6 +196,7 @@ public class CrosswalkHandler<T> extends DefaultHandler {
     @Override
     public final void characters(final char ch[], final int start, final int length) throws SAXException {
         charsSinceStart.append(ch, start, length);
+        charCount += length;
         chars(ch, start, length);
     }
 
@@ -126,7 +205,7 @@ public class CrosswalkHandler<T> extends DefaultHandler {
 
     /** @return the target object */
     protected T getTarget() {
-        return target;
+        return context == null ? null : context.getTarget();
     }
 
     /**
@@ -140,6 +219,16 @@ public class CrosswalkHandler<T> extends DefaultHandler {
         return charsSinceStart.toString();
     }
 
+    /**
+     * The characters since the last startElement without leading and trailing white space, see {@link #getCharsSinceStart()}. The view is reused and
+     * changes with the next call or parse event, call toString to keep the value.
+     * 
+     * @return a view, no copy of the characters
+     */
+    protected CharSequence getTrimmedChars() {
+        return trimmedChars.trim();
+    }
+
     /**
      * The attributes saved by the last startElement. Beware of mixed/complex content, for example: <br>
      * &lt;p> Some &lt;b>bold&lt;/b> text &lt;/p><br>
@@ -152,18 +241,39 @@ public class CrosswalkHandler<T> extends DefaultHandler {
 
     @Override
     public final void setDocumentLocator(final Locator locator) {
-        this.locator = locator;
+        // only the root handler receives a location notification from the SAX parser
+        context.setLocator(locator);
     }
 
     protected void warning(final String message) throws SAXException {
-        reader.getErrorHandler().warning(new SAXParseException(message, locator));
+        report(Severity.WARNING, message, (Object[]) null);
+    }
+
+    /**
+     * Reports a warning of which the message is only formatted if somebody asks for it.
+     * 
+     * @param pattern
+     *        each {} is replaced by the next argument
+     * @param arguments
+     */
+    protected void warning(final String pattern, final Object... arguments) throws SAXException {
+        report(Severity.WARNING, pattern, arguments);
     }
 
     protected void error(final String message) throws SAXException {
-        reader.getErrorHandler().error(new SAXParseException(message, locator));
+        report(Severity.ERROR, message, (Object[]) null);
+    }
+
+    /** See {@link #warning(String, Object...)}. */
+    protected void error(final String pattern, final Object... arguments) throws SAXException {
+        report(Severity.ERROR, pattern, arguments);
     }
 
     protected void fatalError(final String message) throws SAXException {
-        reader.getErrorHandler().fatalError(new SAXParseException(message, locator));
+        report(Severity.FATAL_ERROR, message, (Object[]) null);
+    }
+
+    private void report(final Severity severity, final String pattern, final Object[] arguments) throws SAXException {
+        NotificationCollector.report(context.getErrorHandler(), new CrosswalkDiagnostic(severity, context.getLocator(), pattern, arguments));
     }
 }
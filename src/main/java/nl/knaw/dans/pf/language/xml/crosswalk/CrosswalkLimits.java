@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+/**
+ * Limits on the size of a document, guard against documents that would otherwise grow the buffers of a walk without bound. A walk that exceeds a limit
+ * stops at once with a {@link CrosswalkException}. Instances are immutable, a negative limit means no limit.
+ */
+public final class CrosswalkLimits {
+    /** No limits at all, the default of a {@link Crosswalker}. */
+    public static final CrosswalkLimits NONE = new CrosswalkLimits(-1, -1, -1, -1, -1);
+
+    private final long maxTextLength;
+    private final long maxDepth;
+    private final long maxElements;
+    private final long maxAttributes;
+    private final long maxChars;
+
+    private CrosswalkLimits(final long maxTextLength, final long maxDepth, final long maxElements, final long maxAttributes, final long maxChars) {
+        this.maxTextLength = maxTextLength;
+        this.maxDepth = maxDepth;
+        this.maxElements = maxElements;
+        this.maxAttributes = maxAttributes;
+        this.maxChars = maxChars;
+    }
+
+    /** @return the number of characters since the start of an element, negative if not limited */
+    public long getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    /** @return the nesting depth of elements, the root element is at depth one, negative if not limited */
+    public long getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** @return the number of elements per document, negative if not limited */
+    public long getMaxElements() {
+        return maxElements;
+    }
+
+    /** @return the number of attributes per document, negative if not limited */
+    public long getMaxAttributes() {
+        return maxAttributes;
+    }
+
+    /** @return the number of characters of text per document, negative if not limited */
+    public long getMaxChars() {
+        return maxChars;
+    }
+
+    /** @return true if none of the limits applies */
+    public boolean isUnlimited() {
+        return maxTextLength < 0 && maxDepth < 0 && maxElements < 0 && maxAttributes < 0 && maxChars < 0;
+    }
+
+    /**
+     * @param maxTextLength
+     *        see {@link #getMaxTextLength()}
+     * @return a copy with the new limit
+     */
+    public CrosswalkLimits withMaxTextLength(final long maxTextLength) {
+        return new CrosswalkLimits(maxTextLength, maxDepth, maxElements, maxAttributes, maxChars);
+    }
+
+    /**
+     * @param maxDepth
+     *        see {@link #getMaxDepth()}
+     * @return a copy with the new limit
+     */
+    public CrosswalkLimits withMaxDepth(final long maxDepth) {
+        return new CrosswalkLimits(maxTextLength, maxDepth, maxElements, maxAttributes, maxChars);
+    }
+
+    /**
+     * @param maxElements
+     *        see {@link #getMaxElements()}
+     * @return a copy with the new limit
+     */
+    public CrosswalkLimits withMaxElements(final long maxElements) {
+        return new CrosswalkLimits(maxTextLength, maxDepth, maxElements, maxAttributes, maxChars);
+    }
+
+    /**
+     * @param maxAttributes
+     *        see {@link #getMaxAttributes()}
+     * @return a copy with the new limit
+     */
+    public CrosswalkLimits withMaxAttributes(final long maxAttributes) {
+        return new CrosswalkLimits(maxTextLength, maxDepth, maxElements, maxAttributes, maxChars);
+    }
+
+    /**
+     * @param maxChars
+     *        see {@link #getMaxChars()}
+     * @return a copy with the new limit
+     */
+    public CrosswalkLimits withMaxChars(final long maxChars) {
+        return new CrosswalkLimits(maxTextLength, maxDepth, maxElements, maxAttributes, maxChars);
+    }
+
+    @Override
+    public String toString() {
+        return "text:" + maxTextLength + " depth:" + maxDepth + " elements:" + maxElements + " attributes:" + maxAttributes + " chars:" + maxChars;
+    }
+}
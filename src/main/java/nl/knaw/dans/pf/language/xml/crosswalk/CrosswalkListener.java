@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the outcome of each document of a batch as soon as it is available. The methods are called by the threads that execute the batch, so
+ * implementations must be thread safe.
+ */
+public interface CrosswalkListener<T> {
+
+    /**
+     * @param path
+     *        the document
+     * @param result
+     *        the target, null if errors were reported, and the notifications about the document
+     */
+    void onResult(Path path, CrosswalkResult<T> result);
+
+    /**
+     * @param path
+     *        the document
+     * @param e
+     *        why the document could not be processed at all
+     */
+    void onFailure(Path path, CrosswalkException e);
+}
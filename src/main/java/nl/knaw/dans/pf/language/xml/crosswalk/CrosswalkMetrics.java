@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts per handler class how often it took control, how long it kept control, how long its finishElement took and how many characters it received. The
+ * counters are striped, so walks on many threads don't contend. Only sampled walks are measured, walks that are not sampled don't pay for more than the
+ * sampling decision.
+ */
+public final class CrosswalkMetrics {
+    private final int sampleInterval;
+    private final LongAdder sampledWalks = new LongAdder();
+    private final ConcurrentMap<Class<?>, Counters> counters = new ConcurrentHashMap<Class<?>, Counters>();
+
+    /** The measurements of a handler class. */
+    public static final class HandlerStats {
+        private final long invocations;
+        private final long controlNanos;
+        private final long finishNanos;
+        private final long chars;
+
+        HandlerStats(final long invocations, final long controlNanos, final long finishNanos, final long chars) {
+            this.invocations = invocations;
+            this.controlNanos = controlNanos;
+            this.finishNanos = finishNanos;
+            this.chars = chars;
+        }
+
+        /** @return the number of times the handler took control in sampled walks */
+        public long getInvocations() {
+            return invocations;
+        }
+
+        /** @return the time between taking and returning control, including nested handlers */
+        public long getControlNanos() {
+            return controlNanos;
+        }
+
+        /** @return the time spent in finishElement */
+        public long getFinishNanos() {
+            return finishNanos;
+        }
+
+        /** @return the number of characters received */
+        public long getChars() {
+            return chars;
+        }
+
+        @Override
+        public String toString() {
+            return "invocations=" + invocations + " controlNanos=" + controlNanos + " finishNanos=" + finishNanos + " chars=" + chars;
+        }
+    }
+
+    private static final class Counters {
+        final LongAdder invocations = new LongAdder();
+        final LongAdder controlNanos = new LongAdder();
+        final LongAdder finishNanos = new LongAdder();
+        final LongAdder chars = new LongAdder();
+    }
+
+    /** Creates an instance that measures every walk. */
+    public CrosswalkMetrics() {
+        this(1);
+    }
+
+    /**
+     * @param sampleInterval
+     *        measures on average one out of this number of walks
+     * @throws IllegalArgumentException
+     *         if sampleInterval is less than one
+     */
+    public CrosswalkMetrics(final int sampleInterval) throws IllegalArgumentException {
+        if (sampleInterval < 1)
+            throw new IllegalArgumentException("sampleInterval should be at least one");
+        this.sampleInterval = sampleInterval;
+    }
+
+    /** @return measures one out of this number of walks */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /** @return the number of walks that were measured */
+    public long getSampledWalks() {
+        return sampledWalks.sum();
+    }
+
+    /** @return a snapshot of the measurements per handler class */
+    public Map<Class<?>, HandlerStats> getHandlerStats() {
+        final Map<Class<?>, HandlerStats> snapshot = new HashMap<Class<?>, HandlerStats>();
+        for (final Map.Entry<Class<?>, Counters> entry : counters.entrySet()) {
+            final Counters c = entry.getValue();
+            snapshot.put(entry.getKey(), new HandlerStats(c.invocations.sum(), c.controlNanos.sum(), c.finishNanos.sum(), c.chars.sum()));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /** Clears the measurements, walks in progress may still add theirs. */
+    public void reset() {
+        counters.clear();
+        sampledWalks.reset();
+    }
+
+    /** @return this if the next walk should be measured, otherwise null */
+    CrosswalkMetrics sample() {
+        // random rather than a shared counter that all threads would update
+        if (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0)
+            return null;
+        sampledWalks.increment();
+        return this;
+    }
+
+    void record(final Class<?> handlerClass, final long controlNanos, final long finishNanos, final long chars) {
+        Counters c = counters.get(handlerClass);
+        if (c == null) {
+            final Counters created = new Counters();
+            c = counters.putIfAbsent(handlerClass, created);
+            if (c == null)
+                c = created;
+        }
+        c.invocations.increment();
+        c.controlNanos.add(controlNanos);
+        c.finishNanos.add(finishNanos);
+        c.chars.add(chars);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkDiagnostic.Severity;
+
+import org.xml.sax.SAXParseException;
+
+/**
+ * The outcome of a single walk: the target, the notifications about the document it was created from and the time spent per phase. Instances are immutable
+ * and don't share state with other walks. The number of notifications kept is limited, see {@link Crosswalker#setMaxNotifications(int)}.
+ */
+public final class CrosswalkResult<T> {
+    private final T target;
+    private final List<CrosswalkDiagnostic> warnings;
+    private final List<CrosswalkDiagnostic> errors;
+    private final List<CrosswalkDiagnostic> fatalErrors;
+    private final int droppedNotifications;
+    private final boolean aborted;
+    private final long[] nanos;
+    private final boolean cached;
+
+    /** The phases of a walk. */
+    public enum Phase {
+        /** Validation against an XSD in a separate pass, concurrent with the crosswalk if pipelined. Zero if validation shares the pass of the crosswalk. */
+        VALIDATION,
+        /** Parsing the document and filling the target. */
+        CROSSWALK,
+        /** Checking the target after the crosswalk. */
+        CHECK
+    }
+
+    CrosswalkResult(final T target, final List<CrosswalkDiagnostic> warnings, final List<CrosswalkDiagnostic> errors, final List<CrosswalkDiagnostic> fatalErrors,
+            final int droppedNotifications, final boolean aborted, final long[] nanos)
+    {
+        this(target, warnings, errors, fatalErrors, droppedNotifications, aborted, nanos, false);
+    }
+
+    private CrosswalkResult(final T target, final List<CrosswalkDiagnostic> warnings, final List<CrosswalkDiagnostic> errors,
+            final List<CrosswalkDiagnostic> fatalErrors, final int droppedNotifications, final boolean aborted, final long[] nanos, final boolean cached)
+    {
+        this.warnings = Collections.unmodifiableList(new ArrayList<CrosswalkDiagnostic>(warnings));
+        this.errors = Collections.unmodifiableList(new ArrayList<CrosswalkDiagnostic>(errors));
+        this.fatalErrors = Collections.unmodifiableList(new ArrayList<CrosswalkDiagnostic>(fatalErrors));
+        this.droppedNotifications = droppedNotifications;
+        this.aborted = aborted;
+        this.nanos = nanos.clone();
+        this.cached = cached;
+        this.target = passed() ? target : null;
+    }
+
+    /** @return null if errors were reported */
+    public T getTarget() {
+        return target;
+    }
+
+    /**
+     * @param severity
+     * @return the notifications kept for the severity, without stack traces
+     */
+    public List<CrosswalkDiagnostic> getDiagnostics(final Severity severity) {
+        return severity == Severity.WARNING ? warnings : severity == Severity.ERROR ? errors : fatalErrors;
+    }
+
+    /** @return the warnings converted into exceptions, see {@link #getDiagnostics(Severity)} */
+    public List<SAXParseException> getWarnings() {
+        return toExceptions(warnings);
+    }
+
+    /** @return the errors converted into exceptions, see {@link #getDiagnostics(Severity)} */
+    public List<SAXParseException> getErrors() {
+        return toExceptions(errors);
+    }
+
+    /** @return the fatal errors converted into exceptions, see {@link #getDiagnostics(Severity)} */
+    public List<SAXParseException> getFatalErrors() {
+        return toExceptions(fatalErrors);
+    }
+
+    private static List<SAXParseException> toExceptions(final List<CrosswalkDiagnostic> diagnostics) {
+        final List<SAXParseException> exceptions = new ArrayList<SAXParseException>(diagnostics.size());
+        for (final CrosswalkDiagnostic diagnostic : diagnostics)
+            exceptions.add(diagnostic.toException());
+        return Collections.unmodifiableList(exceptions);
+    }
+
+    /** @return true if neither errors nor fatal errors were reported, warnings are allowed */
+    public boolean passed() {
+        return errors.isEmpty() && fatalErrors.isEmpty();
+    }
+
+    /** @return the number of notifications reported, including those that were not kept */
+    public int getNotificationCount() {
+        return warnings.size() + errors.size() + fatalErrors.size() + droppedNotifications;
+    }
+
+    /** @return the number of notifications that were counted but not kept */
+    public int getDroppedNotificationCount() {
+        return droppedNotifications;
+    }
+
+    /** @return true if the walk stopped before the end of the document because the error budget was spent, see {@link Crosswalker#setMaxErrors(int)} */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /** @return true if this result was taken from a {@link CrosswalkCache}, no time was then spent in any phase */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @param phase
+     * @return the time spent in the phase, zero if {@link #isCached() cached}
+     */
+    public long getNanos(final Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @param phase
+     * @param phaseNanos
+     *        time spent in the phase
+     * @return a copy of this result with the time added to the phase
+     */
+    public CrosswalkResult<T> withNanos(final Phase phase, final long phaseNanos) {
+        final long[] copy = nanos.clone();
+        copy[phase.ordinal()] += phaseNanos;
+        return new CrosswalkResult<T>(target, warnings, errors, fatalErrors, droppedNotifications, aborted, copy, cached);
+    }
+
+    /** @return a copy of this result without target, only the verdict and the notifications */
+    public CrosswalkResult<T> withoutTarget() {
+        return withTarget(null);
+    }
+
+    /** @return a copy of this result with another target */
+    CrosswalkResult<T> withTarget(final T otherTarget) {
+        return new CrosswalkResult<T>(otherTarget, warnings, errors, fatalErrors, droppedNotifications, aborted, nanos, cached);
+    }
+
+    /** @return a copy of this result with another target, marked as cached and without the time of the original walk */
+    CrosswalkResult<T> cachedWithTarget(final T otherTarget) {
+        return new CrosswalkResult<T>(otherTarget, warnings, errors, fatalErrors, droppedNotifications, aborted, new long[nanos.length], true);
+    }
+
+    /** @return one line per notification, fatal errors first */
+    public String getMessages() {
+        final StringBuilder sb = new StringBuilder();
+        append(sb, "fatal error", fatalErrors);
+        append(sb, "error", errors);
+        append(sb, "warning", warnings);
+        if (droppedNotifications > 0)
+            sb.append("and ").append(droppedNotifications).append(" more\n");
+        if (aborted)
+            sb.append("aborted, the error budget is spent\n");
+        return sb.toString();
+    }
+
+    private static void append(final StringBuilder sb, final String severity, final List<CrosswalkDiagnostic> notifications) {
+        for (final CrosswalkDiagnostic e : notifications)
+            sb.append(severity).append(" [").append(e.getLineNumber()).append(",").append(e.getColumnNumber()).append("] ").append(e.getMessage()).append("\n");
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.xml.sax.InputSource;
+
+/**
+ * An XML document to crosswalk. Validation against an XSD in a separate pass reads the document twice, a stream or channel is buffered in memory for that
+ * purpose. The crosswalk closes the source and whatever it opened for reading.
+ */
+public abstract class CrosswalkSource implements Closeable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /** a pipelined walk opens the source on two threads */
+    private final Queue<Closeable> opened = new ConcurrentLinkedQueue<Closeable>();
+
+    /** no subclasses outside the package */
+    CrosswalkSource() {}
+
+    /**
+     * @param path
+     *        a file with XML content
+     * @return a source that opens the file for each pass
+     */
+    public static CrosswalkSource of(final Path path) {
+        return of(path, -1);
+    }
+
+    /**
+     * @param path
+     *        a file with XML content
+     * @param memoryMapThreshold
+     *        files larger than this number of bytes are memory mapped, a negative value disables memory mapping. The mapping outlives
+     *        {@link #close()} until it is garbage collected, so on Windows a mapped file stays locked for a while.
+     * @return a source that opens the file for each pass
+     */
+    public static CrosswalkSource of(final Path path, final long memoryMapThreshold) {
+        return new PathSource(path, memoryMapThreshold);
+    }
+
+    /**
+     * @param xml
+     *        the XML content, an encoding in the XML declaration is ignored
+     * @return a source that reads the characters without copying them
+     */
+    public static CrosswalkSource of(final String xml) {
+        return new StringSource(xml);
+    }
+
+    /**
+     * @param xml
+     *        the XML content, not copied so don't change it during the crosswalk
+     * @return a source that reads the bytes for each pass
+     */
+    public static CrosswalkSource of(final byte[] xml) {
+        return new BytesSource(xml, xml.length);
+    }
+
+    /**
+     * @param inputStream
+     *        XML content, closed by the crosswalk
+     * @return a source that can be read once
+     */
+    public static CrosswalkSource of(final InputStream inputStream) {
+        return new OneShotSource(inputStream);
+    }
+
+    /**
+     * @param channel
+     *        XML content, closed by the crosswalk
+     * @return a source that can be read once
+     */
+    public static CrosswalkSource of(final ReadableByteChannel channel) {
+        return new OneShotSource(Channels.newInputStream(channel));
+    }
+
+    /** @return the document for the SAX parser, a new one for each pass */
+    abstract InputSource open() throws IOException;
+
+    /** @return the document as a stream of bytes, a new one for each pass */
+    abstract InputStream openStream() throws IOException;
+
+    /** @return the characters of the document, a new reader for each pass, null if the document consists of bytes */
+    Reader openReader() {
+        return null;
+    }
+
+    /** @return this source, or a copy in memory if this source can be read only once */
+    CrosswalkSource rereadable() throws IOException {
+        return this;
+    }
+
+    /** closes what was opened for reading */
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (final Closeable closeable : opened) {
+            try {
+                closeable.close();
+            }
+            catch (final IOException e) {
+                if (first == null)
+                    first = e;
+            }
+        }
+        opened.clear();
+        if (first != null)
+            throw first;
+    }
+
+    <C extends Closeable> C opened(final C closeable) {
+        opened.add(closeable);
+        return closeable;
+    }
+
+    private static final class PathSource extends CrosswalkSource {
+        private final Path path;
+        private final long memoryMapThreshold;
+
+        PathSource(final Path path, final long memoryMapThreshold) {
+            this.path = path;
+            this.memoryMapThreshold = memoryMapThreshold;
+        }
+
+        @Override
+        InputSource open() throws IOException {
+            return new InputSource(openStream());
+        }
+
+        @Override
+        InputStream openStream() throws IOException {
+            if (memoryMapThreshold >= 0 && Files.size(path) > memoryMapThreshold) {
+                final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                try {
+                    // the mapping remains valid after closing the channel
+                    return new ByteBufferInputStream(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+                }
+                finally {
+                    channel.close();
+                }
+            }
+            // the parser reads large chunks, no need for an additional buffer
+            return opened(Files.newInputStream(path));
+        }
+    }
+
+    private static final class StringSource extends CrosswalkSource {
+        private final String xml;
+
+        StringSource(final String xml) {
+            this.xml = xml;
+        }
+
+        @Override
+        InputSource open() {
+            return new InputSource(openReader());
+        }
+
+        @Override
+        Reader openReader() {
+            return new StringReader(xml);
+        }
+
+        /** not used by the crosswalk, assumes the XML declaration (if any) says UTF-8 */
+        @Override
+        InputStream openStream() {
+            return new ByteArrayInputStream(xml.getBytes(UTF8));
+        }
+    }
+
+    private static final class BytesSource extends CrosswalkSource {
+        private final byte[] bytes;
+        private final int length;
+
+        BytesSource(final byte[] bytes, final int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        @Override
+        InputSource open() {
+            return new InputSource(openStream());
+        }
+
+        @Override
+        InputStream openStream() {
+            return new ByteArrayInputStream(bytes, 0, length);
+        }
+    }
+
+    /** A stream that can be read once. */
+    private static final class OneShotSource extends CrosswalkSource {
+        private InputStream inputStream;
+
+        OneShotSource(final InputStream inputStream) {
+            this.inputStream = opened(inputStream);
+        }
+
+        @Override
+        InputSource open() {
+            return new InputSource(openStream());
+        }
+
+        @Override
+        InputStream openStream() {
+            if (inputStream == null)
+                throw new IllegalStateException("a stream can be read only once");
+            final InputStream result = inputStream;
+            inputStream = null;
+            return result;
+        }
+
+        @Override
+        CrosswalkSource rereadable() throws IOException {
+            final InputStream in = openStream();
+            final Buffer buffer = new Buffer();
+            final byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) >= 0)
+                buffer.write(chunk, 0, n);
+            return new BytesSource(buffer.bytes(), buffer.size());
+        }
+    }
+
+    /** Gives access to the bytes without another copy. */
+    private static final class Buffer extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            final int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A walk submitted to an executor. Cancelling with mayInterruptIfRunning interrupts the thread of a running walk, which stops at the next element. A walk
+ * cancelled before it starts is not executed.
+ */
+final class CrosswalkTask<T> extends CompletableFuture<CrosswalkResult<T>> implements Runnable {
+    private static final Object INTERRUPTING = new Object();
+    private static final Object FINISHED = new Object();
+
+    private final Callable<CrosswalkResult<T>> walk;
+
+    /** null before the start, the running thread, or one of the markers */
+    private final AtomicReference<Object> runner = new AtomicReference<Object>();
+
+    CrosswalkTask(final Callable<CrosswalkResult<T>> walk) {
+        this.walk = walk;
+    }
+
+    @Override
+    public void run() {
+        final Thread current = Thread.currentThread();
+        if (isDone() || !runner.compareAndSet(null, current))
+            return;
+        try {
+            complete(walk.call());
+        }
+        catch (final Exception e) {
+            completeExceptionally(e);
+        }
+        catch (final Error e) {
+            completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            if (!runner.compareAndSet(current, FINISHED)) {
+                // a cancel is interrupting, don't let the interrupt hit a next task of this thread
+                while (runner.get() != FINISHED)
+                    Thread.yield();
+                Thread.interrupted();
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && mayInterruptIfRunning) {
+            final Object current = runner.get();
+            if (current instanceof Thread && runner.compareAndSet(current, INTERRUPTING)) {
+                ((Thread) current).interrupt();
+                runner.set(FINISHED);
+            }
+        }
+        return cancelled;
+    }
+
+    /** @return a virtual thread per task if the runtime supports them, otherwise a cached pool of daemon threads */
+    static ExecutorService defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    /** Created on first use by the class initialization, which needs no lock of our own. */
+    private static final class DefaultExecutor {
+        private static final ExecutorService INSTANCE = create();
+
+        private static ExecutorService create() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (final ReflectiveOperationException e) {
+                // runtime without virtual threads
+            }
+            final AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "crosswalk-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+}
@@ -15,31 +15,78 @@
  */
 package nl.knaw.dans.pf.language.xml.crosswalk;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.Reader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
 import nl.knaw.dans.pf.language.xml.exc.XMLException;
 import nl.knaw.dans.pf.language.xml.validation.AbstractValidator2;
 import nl.knaw.dans.pf.language.xml.validation.XMLErrorHandler;
 import nl.knaw.dans.pf.language.xml.validation.XMLErrorHandler.Reporter;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
+/**
+ * Fills a target object with the content of an XML document. The crosswalk and walk methods are safe for concurrent use of a single instance, provided the
+ * validator is. The walk methods also report to a single {@link XMLErrorHandler} shared by their calls, which keeps only the latest notifications.
+ */
 public class Crosswalker<T> {
+    private static final Logger logger = LoggerFactory.getLogger(Crosswalker.class);
     private static final String VALIDATE_ERROR_MESSAGE = "could not validate against XSD: ";
-    private XMLReader reader;
-    private XMLErrorHandler errorHandler = new XMLErrorHandler(Reporter.off);
+    private static final DefaultHandler NO_HANDLER = new DefaultHandler();
+
+    /** The default number of notifications per severity kept by a {@link CrosswalkResult}. */
+    public static final int DEFAULT_MAX_NOTIFICATIONS = 100;
+
+    /** Readers are reused by subsequent walks, on any thread. */
+    private static final ReusePool<XMLReader> READERS = new ReusePool<XMLReader>(ReusePool.DEFAULT_MAX_IDLE);
+
+    private final SharedErrorHandler errorHandler = new SharedErrorHandler(DEFAULT_MAX_NOTIFICATIONS);
+    private volatile ValidationMode validationMode = ValidationMode.TWO_PASS;
+    private volatile long memoryMapThreshold = -1;
+    private volatile CrosswalkMetrics metrics;
+    private volatile int maxNotifications = DEFAULT_MAX_NOTIFICATIONS;
+    private volatile int maxErrors = -1;
+    private volatile CrosswalkLimits limits = CrosswalkLimits.NONE;
     public CrosswalkHandlerMap<T> handlerMap;
 
+    /** How the walk methods combine validation against an XSD with the crosswalk. */
+    public enum ValidationMode {
+        /** The validator reads the XML before the crosswalk reads it again. */
+        TWO_PASS,
+        /**
+         * The XML is read once, validation and crosswalk receive the same SAX events. Requires a validator that is a {@link SchemaProvider}, other validators
+         * fall back to {@link #TWO_PASS}. Note that the handlers also receive the events of an invalid document.
+         */
+        SINGLE_PASS,
+        /**
+         * The validator and the crosswalk read the XML at the same time, the validation on a thread of its own. Takes about as long as the slower of the two
+         * passes rather than their sum, at the cost of a second core. The result is that of {@link #TWO_PASS}, the target is only kept if the validation
+         * succeeds. Meant for large documents, for small ones the handover costs more than it saves.
+         */
+        PIPELINED
+    }
+
     /**
      * * Creates an instance.
      * 
@@ -62,18 +109,11 @@ public class Crosswalker<T> {
      *        with XML content
      * @param target
      *        an instance that receives values from the XML
-     * @return the target unless errors are reported by the {@link XMLErrorHandler}
+     * @return the target unless errors are reported about this document
      * @throws CrosswalkException
      */
     final protected T walk(final AbstractValidator2 validator, final File file, T target) throws CrosswalkException, IllegalStateException {
-        try {
-            if (validator != null)
-                validateAgainstXsd(validator, new FileInputStream(file));
-            return parse(new FileInputStream(file), target);
-        }
-        catch (final FileNotFoundException e) {
-            throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
-        }
+        return walk(validator, toSource(file), target);
     }
 
     /**
@@ -85,22 +125,158 @@ public class Crosswalker<T> {
      *        the XML content
      * @param target
      *        an instance that receives values from the XML
-     * @return the target unless errors are reported by the {@link XMLErrorHandler}
+     * @return the target unless errors are reported about this document
      * @throws CrosswalkException
      */
     final protected T walk(final AbstractValidator2 validator, final String xml, T target) throws CrosswalkException, IllegalStateException {
-        final byte[] bytes = xml.getBytes();
-        if (validator != null)
-            validateAgainstXsd(validator, new ByteArrayInputStream(bytes));
-        return parse(new ByteArrayInputStream(bytes), target);
+        return walk(validator, CrosswalkSource.of(xml), target);
+    }
+
+    /**
+     * Fills the target after an optional validation against an XSD.
+     * 
+     * @param validator
+     *        optional, omit if validation against XSD is already done, or the handlers passed on to the constructor are happy with invalid XML
+     * @param source
+     *        the XML content, closed when done
+     * @param target
+     *        an instance that receives values from the XML
+     * @return the target unless errors are reported about this document
+     * @throws CrosswalkException
+     */
+    final protected T walk(final AbstractValidator2 validator, final CrosswalkSource source, T target) throws CrosswalkException, IllegalStateException {
+        return walk(crosswalk(validator, source, target, newCollector(errorHandler), validationMode));
+    }
+
+    /**
+     * Creates an object after an optional validation against an XSD. The notifications are reported with the result rather than by the {@link XMLErrorHandler}.
+     * 
+     * @param validator
+     *        optional, omit if validation against XSD is already done, or the handlers passed on to the constructor are happy with invalid XML
+     * @param file
+     *        with XML content
+     * @param target
+     *        an instance that receives values from the XML
+     * @return the target and the notifications of this call
+     * @throws CrosswalkException
+     */
+    final protected CrosswalkResult<T> crosswalk(final AbstractValidator2 validator, final File file, T target) throws CrosswalkException {
+        return crosswalk(validator, toSource(file), target);
+    }
+
+    /**
+     * Fills the target after an optional validation against an XSD. The notifications are reported with the result rather than by the {@link XMLErrorHandler}.
+     * 
+     * @param validator
+     *        optional, omit if validation against XSD is already done, or the handlers passed on to the constructor are happy with invalid XML
+     * @param xml
+     *        the XML content
+     * @param target
+     *        an instance that receives values from the XML
+     * @return the target and the notifications of this call
+     * @throws CrosswalkException
+     */
+    final protected CrosswalkResult<T> crosswalk(final AbstractValidator2 validator, final String xml, T target) throws CrosswalkException {
+        return crosswalk(validator, CrosswalkSource.of(xml), target);
+    }
+
+    /**
+     * Fills the target after an optional validation against an XSD. The notifications are reported with the result rather than by the {@link XMLErrorHandler}.
+     * 
+     * @param validator
+     *        optional, omit if validation against XSD is already done, or the handlers passed on to the constructor are happy with invalid XML
+     * @param source
+     *        the XML content, closed when done
+     * @param target
+     *        an instance that receives values from the XML
+     * @return the target and the notifications of this call
+     * @throws CrosswalkException
+     */
+    final protected CrosswalkResult<T> crosswalk(final AbstractValidator2 validator, final CrosswalkSource source, T target) throws CrosswalkException {
+        return crosswalk(validator, source, target, newCollector(null), validationMode);
+    }
+
+    /**
+     * Fills the target after an optional validation against an XSD, combined as specified rather than by the {@link #getValidationMode()}.
+     * 
+     * @param validator
+     *        optional, omit if validation against XSD is already done, or the handlers passed on to the constructor are happy with invalid XML
+     * @param source
+     *        the XML content, closed when done
+     * @param target
+     *        an instance that receives values from the XML
+     * @param mode
+     *        how validation and crosswalk are combined for this call
+     * @return the target and the notifications of this call
+     * @throws CrosswalkException
+     */
+    final protected CrosswalkResult<T> crosswalk(final AbstractValidator2 validator, final CrosswalkSource source, T target, final ValidationMode mode)
+            throws CrosswalkException
+    {
+        return crosswalk(validator, source, target, newCollector(null), mode);
+    }
+
+    /**
+     * Starts a crosswalk that receives the XML in chunks. The notifications are reported with the result rather than by the {@link XMLErrorHandler}.
+     * 
+     * @param validator
+     *        optional, validation takes place while feeding, so a validator must be a {@link SchemaProvider}
+     * @param target
+     *        an instance that receives values from the XML
+     * @param completion
+     *        optional, post-processing of the result
+     * @return the feed to pass the chunks to
+     * @throws CrosswalkException
+     * @throws IllegalArgumentException
+     *         if the validator is not a {@link SchemaProvider}
+     */
+    final protected CrosswalkFeed<T> feed(final AbstractValidator2 validator, T target, final CrosswalkFeed.Completion<T> completion)
+            throws CrosswalkException, IllegalArgumentException
+    {
+        if (validator != null && !(validator instanceof SchemaProvider))
+            throw new IllegalArgumentException("a feed can only validate against the schema of a " + SchemaProvider.class.getSimpleName());
+        final NotificationCollector collector = newCollector(null);
+        final ValidatorHandler validatorHandler = validator == null ? null : newValidatorHandler(validator, collector);
+        return new CrosswalkFeed<T>(target, validatorHandler, handlerMap, sampleMetrics(), collector, limits, completion);
+    }
+
+    /**
+     * Runs a walk on an executor. Cancelling the future with mayInterruptIfRunning stops a running walk at the next element.
+     * 
+     * @param walk
+     *        calls one of the crosswalk methods
+     * @param executor
+     *        optional, by default a virtual thread per walk if the runtime supports them, otherwise a shared pool of daemon threads
+     * @return the future result of the walk
+     * @throws RejectedExecutionException
+     *         if the executor does not accept the walk
+     */
+    final protected CompletableFuture<CrosswalkResult<T>> async(final Callable<CrosswalkResult<T>> walk, final Executor executor)
+            throws RejectedExecutionException
+    {
+        final CrosswalkTask<T> task = new CrosswalkTask<T>(walk);
+        (executor == null ? CrosswalkTask.defaultExecutor() : executor).execute(task);
+        return task;
+    }
+
+    /**
+     * @param file
+     *        with XML content
+     * @return a source for the file that respects the {@link #getMemoryMapThreshold()}
+     */
+    protected CrosswalkSource toSource(final File file) {
+        return CrosswalkSource.of(file.toPath(), memoryMapThreshold);
     }
 
     /**
      * The handler of notifications. Initially the log level is off. The level can be changed with <code>setReporter(Reporter)</code>. The handler collects
-     * notifications of subsequent calls to the walk methods unless reset is called in between.
+     * notifications of subsequent calls to the walk methods unless reset is called in between, it keeps the latest {@link #getMaxNotifications()} per
+     * severity and counts the others. Safe for concurrent walks, its lists are copies.
      * 
      * @return The handler of notifications.
+     * @deprecated the handler mixes the notifications of all walks, use the notifications of a {@link CrosswalkResult} instead
      */
+    @Deprecated
     public XMLErrorHandler getXmlErrorHandler() {
         return errorHandler;
     }
@@ -109,55 +285,413 @@ public class Crosswalker<T> {
      * Change the logging level of the error handler.
      * 
      * @param reporter
+     * @deprecated see {@link #getXmlErrorHandler()}
      */
+    @Deprecated
     public void setReporter(Reporter reporter) {
         errorHandler.setReporter(reporter);
     }
 
-    private void validateAgainstXsd(final AbstractValidator2 validator, final InputStream xml) throws CrosswalkException {
+    /** @return how validation and crosswalk are combined, by default {@link ValidationMode#TWO_PASS} */
+    public ValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    /**
+     * Change how the walk methods combine validation and crosswalk.
+     * 
+     * @param validationMode
+     * @throws IllegalArgumentException
+     *         if validationMode is null
+     */
+    public void setValidationMode(final ValidationMode validationMode) throws IllegalArgumentException {
+        if (validationMode == null)
+            throw new IllegalArgumentException("validationMode can not be null");
+        this.validationMode = validationMode;
+    }
+
+    /** @return files larger than this number of bytes are memory mapped, negative (the default) if never */
+    public long getMemoryMapThreshold() {
+        return memoryMapThreshold;
+    }
+
+    /**
+     * Memory mapping saves copying large files through the heap, for small files a plain stream is cheaper. Note that a mapping is only released when it is
+     * garbage collected, on platforms that lock mapped files, like Windows, a mapped file can not be deleted or replaced right after the crosswalk.
+     * 
+     * @param memoryMapThreshold
+     *        files larger than this number of bytes are memory mapped, a negative value disables memory mapping
+     */
+    public void setMemoryMapThreshold(final long memoryMapThreshold) {
+        this.memoryMapThreshold = memoryMapThreshold;
+    }
+
+    /** @return the number of notifications per severity kept by a {@link CrosswalkResult} and by the {@link #getXmlErrorHandler() shared handler} */
+    public int getMaxNotifications() {
+        return maxNotifications;
+    }
+
+    /**
+     * Limits the memory held by the notifications about a document, further notifications are only counted. The shared handler of the walk methods keeps the
+     * latest notifications up to the same number.
+     * 
+     * @param maxNotifications
+     *        the number of notifications per severity kept by a {@link CrosswalkResult}, by default {@link #DEFAULT_MAX_NOTIFICATIONS}
+     * @throws IllegalArgumentException
+     *         if maxNotifications is less than one
+     */
+    public void setMaxNotifications(final int maxNotifications) throws IllegalArgumentException {
+        if (maxNotifications < 1)
+            throw new IllegalArgumentException("maxNotifications should be at least one");
+        this.maxNotifications = maxNotifications;
+        errorHandler.setMaxPerSeverity(maxNotifications);
+    }
+
+    /** @return the number of errors after which a walk is aborted, negative (the default) if all errors are collected */
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * Stops a walk as soon as it has seen enough errors, which saves reading the rest of a large invalid document. Errors and fatal errors are counted, warnings
+     * are not. The result of an aborted walk {@link CrosswalkResult#isAborted() tells so} and has no target.
+     * 
+     * @param maxErrors
+     *        1 to stop at the first error, negative to collect all errors
+     * @throws IllegalArgumentException
+     *         if maxErrors is zero
+     */
+    public void setMaxErrors(final int maxErrors) throws IllegalArgumentException {
+        if (maxErrors == 0)
+            throw new IllegalArgumentException("maxErrors should be positive, or negative for no limit");
+        this.maxErrors = maxErrors;
+    }
+
+    /** @return the limits on the size of a document, by default {@link CrosswalkLimits#NONE} */
+    public CrosswalkLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Protects the memory of the walks against huge or deeply nested documents. The limits apply to the validation as well as to the crosswalk, except for
+     * the validation by a validator that is not a {@link SchemaProvider}.
+     * 
+     * @param limits
+     *        {@link CrosswalkLimits#NONE} to accept any document
+     * @throws IllegalArgumentException
+     *         if limits is null
+     */
+    public void setLimits(final CrosswalkLimits limits) throws IllegalArgumentException {
+        if (limits == null)
+            throw new IllegalArgumentException("limits can not be null");
+        this.limits = limits;
+    }
+
+    /** @return null (the default) if the walks are not measured */
+    public CrosswalkMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Measure the handlers of (a sample of) the walks.
+     * 
+     * @param metrics
+     *        null to stop measuring
+     */
+    public void setMetrics(final CrosswalkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** @return the metrics if the next walk is measured, otherwise null */
+    private CrosswalkMetrics sampleMetrics() {
+        final CrosswalkMetrics current = metrics;
+        return current == null ? null : current.sample();
+    }
+
+    private NotificationCollector newCollector(final ErrorHandler forward) {
+        return new NotificationCollector(forward, maxNotifications, maxErrors);
+    }
+
+    private T walk(final CrosswalkResult<T> result) {
+        // the verdict about this document, not about all notifications collected by the shared handler
+        return result.getTarget();
+    }
+
+    private CrosswalkResult<T> crosswalk(final AbstractValidator2 validator, final CrosswalkSource source, T target, final NotificationCollector collector,
+            final ValidationMode mode) throws CrosswalkException
+    {
         try {
-            validator.validate(errorHandler, xml);
+            if (mode == ValidationMode.SINGLE_PASS && validator instanceof SchemaProvider)
+                return parse(source.open(), target, newValidatorHandler(validator, collector), collector);
+            if (validator == null)
+                return parse(source.open(), target, null, collector);
+            if (mode == ValidationMode.PIPELINED)
+                return pipeline(validator, source.rereadable(), target, collector);
+            final long start = System.nanoTime();
+            final CrosswalkSource rereadable = source.rereadable();
+            validateAgainstXsd(validator, rereadable, collector);
+            collector.addNanos(Phase.VALIDATION, start);
+            if (collector.isAborted())
+                return collector.toResult(target);
+            return parse(rereadable.open(), target, null, collector);
         }
-        catch (XMLException e) {
+        catch (final IOException e) {
+            throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
+        }
+        finally {
+            close(source);
+        }
+    }
+
+    /**
+     * Validates on another thread while the current thread crosswalks. Each pass collects its own notifications, they are combined in the order of a
+     * {@link ValidationMode#TWO_PASS} walk when both are done.
+     */
+    private CrosswalkResult<T> pipeline(final AbstractValidator2 validator, final CrosswalkSource xml, final T target, final NotificationCollector collector)
+            throws CrosswalkException, IOException
+    {
+        final NotificationCollector validation = newCollector(null);
+        final FutureTask<Void> validating = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws CrosswalkException, IOException {
+                final long start = System.nanoTime();
+                validateAgainstXsd(validator, xml, validation);
+                validation.addNanos(Phase.VALIDATION, start);
+                return null;
+            }
+        });
+        final InputSource inputSource = xml.open();
+        final CountDownLatch finished = new CountDownLatch(1);
+        CrosswalkTask.defaultExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    validating.run();
+                }
+                finally {
+                    finished.countDown();
+                }
+            }
+        });
+        final NotificationCollector crosswalk = newCollector(null);
+        CrosswalkException crosswalkFailure = null;
+        boolean parsed = false;
+        try {
+            try {
+                parse(inputSource, target, null, crosswalk);
+            }
+            catch (final CrosswalkException e) {
+                crosswalkFailure = e;
+            }
+            parsed = true;
+        }
+        finally {
+            // the caller closes the source, never while the validation still reads it
+            if (!parsed || Thread.currentThread().isInterrupted())
+                validating.cancel(true);
+            join(finished);
+        }
+        if (validating.isCancelled())
+            throw crosswalkFailure != null ? crosswalkFailure : new CrosswalkException("interrupted while validating", null);
+        await(validating);
+        try {
+            collector.addAll(validation);
+            if (collector.isAborted())
+                return collector.toResult(target);
+            if (crosswalkFailure != null)
+                throw crosswalkFailure;
+            collector.addAll(crosswalk);
+        }
+        catch (final SAXException e) {
             throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
         }
+        return collector.toResult(target);
     }
 
-    private T parse(final InputStream source, T target) throws CrosswalkException {
-        getReader().setErrorHandler(errorHandler);
+    /** Waits for the validation to stop running, also if the current thread is interrupted. */
+    private static void join(final CountDownLatch finished) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            }
+            catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
 
-        // sets itself as ContentHandler of the reader passed into it
-        new CrosswalkHandler<T>(target, getReader(), handlerMap);
+    /** @param validating a task that is done */
+    private static void await(final FutureTask<Void> validating) throws CrosswalkException, IOException {
+        try {
+            validating.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CrosswalkException("interrupted while validating", e);
+        }
+        catch (final ExecutionException e) {
+            if (e.getCause() instanceof CrosswalkException)
+                throw (CrosswalkException) e.getCause();
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw (RuntimeException) e.getCause();
+        }
+    }
 
-        final String msg = "could not parse: ";
+    private static void close(final CrosswalkSource source) {
         try {
-            getReader().parse(new InputSource(source));
+            source.close();
         }
         catch (final IOException e) {
-            throw new CrosswalkException(msg + e.getMessage(), e);
+            // the content is read, don't mask the outcome of the walk
+            logger.warn("could not close: {}", e.getMessage());
+        }
+    }
+
+    private ValidatorHandler newValidatorHandler(final AbstractValidator2 validator, final ErrorHandler collector) throws CrosswalkException {
+        try {
+            final ValidatorHandler validatorHandler = ((SchemaProvider) validator).getSchema().newValidatorHandler();
+            validatorHandler.setErrorHandler(collector);
+            validatorHandler.setResourceResolver(SchemaCatalog.getResourceResolver());
+            return validatorHandler;
+        }
+        catch (final SAXException e) {
+            throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
+        }
+    }
+
+    private void validateAgainstXsd(final AbstractValidator2 validator, final CrosswalkSource xml, final NotificationCollector collector)
+            throws CrosswalkException, IOException
+    {
+        if (validator instanceof SchemaProvider) {
+            try {
+                final Schema schema = ((SchemaProvider) validator).getSchema();
+                final Validator schemaValidator = SchemaCache.acquireValidator(schema);
+                try {
+                    schemaValidator.setErrorHandler(collector);
+                    validate(schemaValidator, xml);
+                }
+                finally {
+                    SchemaCache.releaseValidator(schema, schemaValidator);
+                }
+            }
+            catch (final SAXException e) {
+                if (!collector.isAborted())
+                    throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
+            }
+            catch (final IOException e) {
+                throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
+            }
+            return;
+        }
+        final Reader characters = xml.openReader();
+        if (characters != null) {
+            // bytes might not match the encoding in the XML declaration
+            final XMLErrorHandler validationHandler;
+            try {
+                validationHandler = validator.validate(new StreamSource(characters));
+            }
+            catch (XMLException e) {
+                throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
+            }
+            addAll(collector, validationHandler);
+            return;
+        }
+        final XMLErrorHandler validationHandler = new XMLErrorHandler(Reporter.off);
+        try {
+            validator.validate(validationHandler, xml.openStream());
+        }
+        catch (XMLException e) {
+            throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
+        }
+        finally {
+            addAll(collector, validationHandler);
+        }
+    }
+
+    /** The validator reads the events of a reader of the walks, so it parses with the same configuration and limits. */
+    private void validate(final Validator schemaValidator, final CrosswalkSource xml) throws CrosswalkException, SAXException, IOException {
+        final XMLReader reader = acquireReader();
+        try {
+            schemaValidator.validate(new SAXSource(guard(reader), xml.open()));
+        }
+        finally {
+            releaseReader(reader);
+        }
+    }
+
+    /** @return the reader, or a filter in front of it if there are limits */
+    private XMLReader guard(final XMLReader reader) {
+        final CrosswalkLimits current = limits;
+        return current.isUnlimited() ? reader : new CrosswalkGuard(reader, current);
+    }
+
+    private static void addAll(final NotificationCollector collector, final XMLErrorHandler validationHandler) throws CrosswalkException {
+        try {
+            collector.addAll(validationHandler);
         }
         catch (final SAXException e) {
-            throw new CrosswalkException(msg + e.getMessage(), e);
+            if (!collector.isAborted())
+                throw new CrosswalkException(VALIDATE_ERROR_MESSAGE + e.getMessage(), e);
         }
-        if (errorHandler.getErrors().size() == 0 && errorHandler.getFatalErrors().size() == 0)
-            return target;
-        return null;
     }
 
-    private XMLReader getReader() throws CrosswalkException {
-        if (reader != null)
-            return reader;
+    private CrosswalkResult<T> parse(final InputSource source, T target, final ValidatorHandler validatorHandler, final NotificationCollector collector)
+            throws CrosswalkException
+    {
+        final long start = System.nanoTime();
+        final XMLReader parser = acquireReader();
         try {
-            final SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            reader = factory.newSAXParser().getXMLReader();
-            return reader;
+            final XMLReader reader = guard(parser);
+            reader.setErrorHandler(collector);
+
+            // sets itself (or the validatorHandler in front of it) as ContentHandler of the reader passed into it
+            new CrosswalkHandler<T>(target, reader, validatorHandler, handlerMap, sampleMetrics());
+
+            final String msg = "could not parse: ";
+            try {
+                reader.parse(source);
+            }
+            catch (final IOException e) {
+                throw new CrosswalkException(msg + e.getMessage(), e);
+            }
+            catch (final SAXException e) {
+                // an abort leaves a result with the errors so far
+                if (!collector.isAborted())
+                    throw new CrosswalkException(msg + e.getMessage(), e);
+            }
+        }
+        finally {
+            releaseReader(parser);
+        }
+        collector.addNanos(Phase.CROSSWALK, start);
+        return collector.toResult(target);
+    }
+
+    static XMLReader acquireReader() throws CrosswalkException {
+        final XMLReader reader = READERS.acquire();
+        return reader == null ? newReader() : reader;
+    }
+
+    static void releaseReader(final XMLReader reader) {
+        // don't keep the handlers and their target alive
+        reader.setContentHandler(NO_HANDLER);
+        reader.setErrorHandler(NO_HANDLER);
+        READERS.release(reader);
+    }
+
+    private static XMLReader newReader() throws CrosswalkException {
+        try {
+            return XMLReaders.newReader();
         }
         catch (final SAXException e) {
             throw new CrosswalkException("could not get reader from parser: " + e.getMessage(), e);
         }
-        catch (ParserConfigurationException e) {
-            throw new CrosswalkException("could not create parser" + e.getMessage(), e);
-        }
     }
 }
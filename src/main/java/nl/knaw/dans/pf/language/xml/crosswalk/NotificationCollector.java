@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkDiagnostic.Severity;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
+import nl.knaw.dans.pf.language.xml.validation.XMLErrorHandler;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Collects the notifications and phase timings of a single walk, optionally passing the notifications on to an error handler that outlives the walk. Keeps a
+ * limited number of notifications per severity, the others are only counted. Notifications are kept as {@link CrosswalkDiagnostic}, the handler passed on to
+ * receives them as exceptions. Throws an {@link Abort} when the error budget is spent, so the SAX parser stops at once.
+ */
+final class NotificationCollector implements ErrorHandler {
+    private final List<CrosswalkDiagnostic> warnings = new ArrayList<CrosswalkDiagnostic>();
+    private final List<CrosswalkDiagnostic> errors = new ArrayList<CrosswalkDiagnostic>();
+    private final List<CrosswalkDiagnostic> fatalErrors = new ArrayList<CrosswalkDiagnostic>();
+    private final long[] nanos = new long[Phase.values().length];
+    private final ErrorHandler forward;
+    private final int maxPerSeverity;
+    private final int maxErrors;
+    private int dropped;
+    private int errorCount;
+    private boolean aborted;
+
+    /** Thrown by the collector to stop the parser, not a problem with the document itself. */
+    static final class Abort extends SAXException {
+        private static final long serialVersionUID = 1L;
+
+        Abort(final int errorCount) {
+            super("aborted after " + errorCount + " errors");
+        }
+    }
+
+    /**
+     * @param forward
+     *        optional, receives each notification as it occurs
+     * @param maxPerSeverity
+     *        the number of notifications kept for each severity
+     * @param maxErrors
+     *        the number of errors and fatal errors after which the walk is aborted, negative for no limit
+     */
+    NotificationCollector(final ErrorHandler forward, final int maxPerSeverity, final int maxErrors) {
+        this.forward = forward;
+        this.maxPerSeverity = maxPerSeverity;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Reports a diagnostic to a handler, without conversion into an exception if the handler is a collector.
+     * 
+     * @param handler
+     * @param diagnostic
+     * @throws SAXException
+     */
+    static void report(final ErrorHandler handler, final CrosswalkDiagnostic diagnostic) throws SAXException {
+        if (handler instanceof NotificationCollector)
+            ((NotificationCollector) handler).report(diagnostic);
+        else
+            forward(handler, diagnostic);
+    }
+
+    private static void forward(final ErrorHandler handler, final CrosswalkDiagnostic diagnostic) throws SAXException {
+        switch (diagnostic.getSeverity()) {
+        case WARNING:
+            handler.warning(diagnostic.toException());
+            break;
+        case ERROR:
+            handler.error(diagnostic.toException());
+            break;
+        default:
+            handler.fatalError(diagnostic.toException());
+        }
+    }
+
+    @Override
+    public void warning(final SAXParseException exception) throws SAXException {
+        report(new CrosswalkDiagnostic(Severity.WARNING, exception));
+    }
+
+    @Override
+    public void error(final SAXParseException exception) throws SAXException {
+        report(new CrosswalkDiagnostic(Severity.ERROR, exception));
+    }
+
+    @Override
+    public void fatalError(final SAXParseException exception) throws SAXException {
+        report(new CrosswalkDiagnostic(Severity.FATAL_ERROR, exception));
+    }
+
+    void report(final CrosswalkDiagnostic diagnostic) throws SAXException {
+        final Severity severity = diagnostic.getSeverity();
+        add(severity == Severity.WARNING ? warnings : severity == Severity.ERROR ? errors : fatalErrors, diagnostic);
+        if (forward != null)
+            forward(forward, diagnostic);
+        if (severity != Severity.WARNING)
+            checkBudget();
+    }
+
+    private void add(final List<CrosswalkDiagnostic> notifications, final CrosswalkDiagnostic diagnostic) {
+        if (notifications.size() < maxPerSeverity)
+            notifications.add(diagnostic);
+        else
+            dropped++;
+    }
+
+    private void checkBudget() throws Abort {
+        ++errorCount;
+        if (maxErrors >= 0 && errorCount >= maxErrors) {
+            aborted = true;
+            throw new Abort(errorCount);
+        }
+    }
+
+    /** @return true if an {@link Abort} was thrown */
+    boolean isAborted() {
+        return aborted;
+    }
+
+    /** Takes over the notifications of a validator that requires a handler of its own. */
+    void addAll(final XMLErrorHandler handler) throws SAXException {
+        for (final SAXParseException e : handler.getWarnings())
+            warning(e);
+        for (final SAXParseException e : handler.getErrors())
+            error(e);
+        for (final SAXParseException e : handler.getFatalErrors())
+            fatalError(e);
+    }
+
+    /**
+     * Takes over the notifications, timings and verdict of a collector of a pass that ran on another thread. Call when that pass is done.
+     * 
+     * @param other
+     * @throws SAXException
+     *         by the handler passed on to
+     */
+    void addAll(final NotificationCollector other) throws SAXException {
+        takeOver(warnings, other.warnings);
+        takeOver(errors, other.errors);
+        takeOver(fatalErrors, other.fatalErrors);
+        dropped += other.dropped;
+        errorCount += other.errorCount;
+        aborted |= other.aborted || (maxErrors >= 0 && errorCount >= maxErrors);
+        for (int i = 0; i < nanos.length; i++)
+            nanos[i] += other.nanos[i];
+    }
+
+    private void takeOver(final List<CrosswalkDiagnostic> notifications, final List<CrosswalkDiagnostic> others) throws SAXException {
+        for (final CrosswalkDiagnostic diagnostic : others) {
+            add(notifications, diagnostic);
+            if (forward != null)
+                forward(forward, diagnostic);
+        }
+    }
+
+    /** Adds the time since start to a phase. */
+    void addNanos(final Phase phase, final long start) {
+        nanos[phase.ordinal()] += System.nanoTime() - start;
+    }
+
+    <T> CrosswalkResult<T> toResult(final T target) {
+        return new CrosswalkResult<T>(target, warnings, errors, fatalErrors, dropped, aborted, nanos);
+    }
+}
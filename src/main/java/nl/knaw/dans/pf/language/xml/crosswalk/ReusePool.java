@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small bounded pool of objects that are expensive to create and not thread safe, like validators and readers. Not tied to threads, so tasks that each run
+ * on a new (virtual) thread reuse the objects as well, and nothing is left behind on pooled threads. The most recently released object is acquired first.
+ */
+final class ReusePool<T> {
+    /** The default number of idle objects kept. */
+    static final int DEFAULT_MAX_IDLE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private final ConcurrentLinkedDeque<T> idle = new ConcurrentLinkedDeque<T>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maxIdle;
+
+    /**
+     * @param maxIdle
+     *        the number of idle objects kept, further released objects are discarded
+     */
+    ReusePool(final int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /** @return an idle object, null if there is none */
+    T acquire() {
+        final T object = idle.pollFirst();
+        if (object != null)
+            idleCount.decrementAndGet();
+        return object;
+    }
+
+    /**
+     * @param object
+     *        no longer used by the caller, reset as far as needed
+     */
+    void release(final T object) {
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offerFirst(object);
+    }
+
+    /** @return the number of idle objects */
+    int getIdleCount() {
+        return idleCount.get();
+    }
+}
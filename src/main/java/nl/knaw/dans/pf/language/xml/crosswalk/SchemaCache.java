@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.SAXException;
+
+/**
+ * Process wide cache of compiled schemas, keyed by the locations of their XSDs. A schema set is compiled once, also when requested concurrently. Validators
+ * of a cached schema are pooled, so concurrent validations neither recompile nor contend, also if each runs on a thread of its own.
+ */
+public final class SchemaCache {
+    private static final ConcurrentMap<List<String>, Entry> BY_XSDS = new ConcurrentHashMap<List<String>, Entry>();
+    private static final ConcurrentMap<Schema, Entry> BY_SCHEMA = new ConcurrentHashMap<Schema, Entry>();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** no instantiation for a utility class */
+    private SchemaCache() {}
+
+    /**
+     * @param xsds
+     *        locations of the XSDs, the order is part of the key
+     * @return the compiled schema, compiled by the current thread if not yet available
+     * @throws SAXException
+     *         if the schema could not be compiled, a next call tries again
+     */
+    public static Schema getSchema(final String... xsds) throws SAXException {
+        final List<String> key = Arrays.asList(xsds.clone());
+        Entry entry = BY_XSDS.get(key);
+        if (entry == null) {
+            final Entry newEntry = new Entry(key);
+            entry = BY_XSDS.putIfAbsent(key, newEntry);
+            if (entry == null)
+                entry = newEntry;
+        }
+        return entry.getSchema();
+    }
+
+    /**
+     * Compiles schema sets in parallel, for example at startup, on a thread per set up to the number of available processors.
+     * 
+     * @param schemaSets
+     *        each an array of XSD locations as passed to {@link #getSchema(String...)}
+     * @throws SAXException
+     *         the first failure, other schema sets are compiled anyway
+     * @throws InterruptedException
+     */
+    public static void compile(final String[]... schemaSets) throws SAXException, InterruptedException {
+        final int threads = Math.max(1, Math.min(schemaSets.length, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            compile(executor, schemaSets);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Compiles schema sets in parallel, for example at startup.
+     * 
+     * @param executor
+     *        executes the compilation of each schema set
+     * @param schemaSets
+     *        each an array of XSD locations as passed to {@link #getSchema(String...)}
+     * @throws SAXException
+     *         the first failure, other schema sets are compiled anyway
+     * @throws InterruptedException
+     */
+    public static void compile(final Executor executor, final String[]... schemaSets) throws SAXException, InterruptedException {
+        final List<FutureTask<Schema>> tasks = new ArrayList<FutureTask<Schema>>();
+        for (final String[] xsds : schemaSets) {
+            final FutureTask<Schema> task = new FutureTask<Schema>(new Callable<Schema>() {
+                @Override
+                public Schema call() throws SAXException {
+                    return getSchema(xsds);
+                }
+            });
+            executor.execute(task);
+            tasks.add(task);
+        }
+        SAXException firstFailure = null;
+        for (final FutureTask<Schema> task : tasks) {
+            try {
+                task.get();
+            }
+            catch (final ExecutionException e) {
+                if (firstFailure == null)
+                    firstFailure = toSAXException(e);
+            }
+        }
+        if (firstFailure != null)
+            throw firstFailure;
+    }
+
+    /**
+     * Identifies the content a cached schema was compiled from, for example to tell results of another schema set apart when a different
+     * {@link SchemaCatalog#setOverrideDir(java.io.File) override directory} was used. Documents without a local copy are identified by their location only.
+     * 
+     * @param schema
+     *        as returned by {@link #getSchema(String...)}
+     * @return a SHA-256 digest of the documents read by the compilation, in hexadecimal notation, null if the schema is not cached
+     */
+    public static String getDigest(final Schema schema) {
+        final Entry entry = BY_SCHEMA.get(schema);
+        return entry == null ? null : entry.digest;
+    }
+
+    /**
+     * Takes an idle validator of the schema, or a new one if none is idle or the schema is not cached. Pass the validator to
+     * {@link #releaseValidator(Schema, Validator)} when done.
+     * 
+     * @param schema
+     * @return a validator without error handler, hardened by {@link XMLReaders#harden(Validator)}
+     */
+    public static Validator acquireValidator(final Schema schema) {
+        final Entry entry = BY_SCHEMA.get(schema);
+        if (entry == null)
+            return newValidator(schema);
+        final Validator validator = entry.validators.acquire();
+        return validator == null ? newValidator(schema) : validator;
+    }
+
+    /**
+     * Makes the validator available for a next validation, on any thread.
+     * 
+     * @param schema
+     *        as passed to {@link #acquireValidator(Schema)}
+     * @param validator
+     *        as returned by {@link #acquireValidator(Schema)}
+     */
+    public static void releaseValidator(final Schema schema, final Validator validator) {
+        final Entry entry = BY_SCHEMA.get(schema);
+        if (entry == null)
+            return;
+        // don't keep the error handler and what it refers to alive
+        validator.reset();
+        validator.setErrorHandler(null);
+        validator.setResourceResolver(SchemaCatalog.getResourceResolver());
+        entry.validators.release(XMLReaders.harden(validator));
+    }
+
+    private static Validator newValidator(final Schema schema) {
+        final Validator validator = schema.newValidator();
+        validator.setResourceResolver(SchemaCatalog.getResourceResolver());
+        return XMLReaders.harden(validator);
+    }
+
+    private static void close(final StreamSource[] sources) {
+        for (final StreamSource source : sources) {
+            if (source == null || source.getInputStream() == null)
+                continue;
+            try {
+                source.getInputStream().close();
+            }
+            catch (final IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes)
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    private static SAXException toSAXException(final ExecutionException e) {
+        if (e.getCause() instanceof SAXException)
+            return (SAXException) e.getCause();
+        if (e.getCause() instanceof Error)
+            throw (Error) e.getCause();
+        return new SAXException(e.getCause().getMessage(), (Exception) e.getCause());
+    }
+
+    private static final class Entry {
+        private final List<String> xsds;
+        private final ReusePool<Validator> validators = new ReusePool<Validator>(ReusePool.DEFAULT_MAX_IDLE);
+        private volatile FutureTask<Schema> compilation = newCompilation();
+        private volatile String digest;
+
+        Entry(final List<String> xsds) {
+            this.xsds = xsds;
+        }
+
+        Schema getSchema() throws SAXException {
+            final FutureTask<Schema> task = compilation;
+            // compiles unless done or in progress by another thread
+            task.run();
+            try {
+                return task.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("interrupted while waiting for the compilation of " + xsds, e);
+            }
+            catch (final ExecutionException e) {
+                // allow a retry, for example after a network failure
+                if (compilation == task)
+                    compilation = newCompilation();
+                throw toSAXException(e);
+            }
+        }
+
+        private FutureTask<Schema> newCompilation() {
+            return new FutureTask<Schema>(new Callable<Schema>() {
+                @Override
+                public Schema call() throws SAXException, IOException {
+                    final StreamSource[] sources = new StreamSource[xsds.size()];
+                    final MessageDigest content = sha256();
+                    try {
+                        for (int i = 0; i < sources.length; i++) {
+                            sources[i] = SchemaCatalog.newSource(xsds.get(i));
+                            if (sources[i].getInputStream() == null)
+                                content.update(xsds.get(i).getBytes(UTF8));
+                            else
+                                sources[i].setInputStream(new DigestInputStream(sources[i].getInputStream(), content));
+                        }
+                        // a factory is not thread safe
+                        final SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+                        factory.setResourceResolver(new DigestingResolver(content));
+                        final Schema schema = factory.newSchema(sources);
+                        digest = toHex(content.digest());
+                        BY_SCHEMA.put(schema, Entry.this);
+                        return schema;
+                    }
+                    finally {
+                        close(sources);
+                    }
+                }
+            });
+        }
+    }
+
+    /** Resolves by the {@link SchemaCatalog}, adding what it reads to a digest. */
+    private static final class DigestingResolver implements LSResourceResolver {
+        private final MessageDigest content;
+
+        DigestingResolver(final MessageDigest content) {
+            this.content = content;
+        }
+
+        @Override
+        public LSInput resolveResource(final String type, final String namespaceURI, final String publicId, final String systemId, final String baseURI) {
+            final LSInput input = SchemaCatalog.getResourceResolver().resolveResource(type, namespaceURI, publicId, systemId, baseURI);
+            if (input == null) {
+                // left to the parser
+                if (systemId != null)
+                    content.update(systemId.getBytes(UTF8));
+                return null;
+            }
+            input.setByteStream(new DigestInputStream(input.getByteStream(), content));
+            return input;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+
+/**
+ * Resolves online schema locations to local copies, so validation and vocabulary loading need no network access. A location
+ * <code>http://host/path</code> is looked up as <code>host/path</code> in the override directory and then as resource <code>xsd/host/path</code> on the
+ * class path. The build bundles the EASY schemas and the third party schemas they import: Dublin Core, GML 3.2.1 with ISO 19139, xlink and xml.xsd.
+ * Locations without a local copy are left to the parser.
+ */
+public final class SchemaCatalog {
+    /** System property with the initial override directory, for example a newer local schema set. */
+    public static final String OVERRIDE_DIR_PROPERTY = "nl.knaw.dans.pf.language.xml.schemaDir";
+
+    private static final String RESOURCE_ROOT = "xsd/";
+    private static final Logger logger = LoggerFactory.getLogger(SchemaCatalog.class);
+    private static final LSResourceResolver RESOLVER = new Resolver();
+
+    private static volatile File overrideDir = initOverrideDir();
+
+    /** no instantiation for a utility class */
+    private SchemaCatalog() {}
+
+    private static File initOverrideDir() {
+        final String dir = System.getProperty(OVERRIDE_DIR_PROPERTY);
+        return dir == null ? null : new File(dir);
+    }
+
+    /** @return the directory searched before the class path, null if none */
+    public static File getOverrideDir() {
+        return overrideDir;
+    }
+
+    /**
+     * Note that schemas that are already compiled by the {@link SchemaCache} are not affected.
+     * 
+     * @param dir
+     *        searched before the class path, null to search the class path only
+     */
+    public static void setOverrideDir(final File dir) {
+        overrideDir = dir;
+    }
+
+    /**
+     * @param location
+     *        a schema location
+     * @return the URL of the local copy, the location itself if there is no local copy
+     */
+    public static String locate(final String location) {
+        final String relativePath = toRelativePath(location);
+        if (relativePath == null)
+            return location;
+        final File dir = overrideDir;
+        if (dir != null) {
+            final File file = new File(dir, relativePath);
+            if (file.isFile())
+                return file.toURI().toString();
+        }
+        final URL resource = SchemaCatalog.class.getClassLoader().getResource(RESOURCE_ROOT + relativePath);
+        if (resource != null)
+            return resource.toString();
+        logger.debug("no local copy of {}", location);
+        return location;
+    }
+
+    /**
+     * @param location
+     *        a schema location
+     * @return a source that reads the local copy if available, the system ID remains the location so relative references resolve as online
+     * @throws IOException
+     */
+    public static StreamSource newSource(final String location) throws IOException {
+        final String local = locate(location);
+        if (local.equals(location))
+            return new StreamSource(location);
+        return new StreamSource(new URL(local).openStream(), location);
+    }
+
+    /** @return a resolver for schema factories and validators that reads local copies */
+    public static LSResourceResolver getResourceResolver() {
+        return RESOLVER;
+    }
+
+    /** @return host and path of an http(s) URL, null for other locations */
+    private static String toRelativePath(final String location) {
+        final URI uri;
+        try {
+            uri = new URI(location);
+        }
+        catch (final URISyntaxException e) {
+            return null;
+        }
+        if (uri.getHost() == null || uri.getPath() == null)
+            return null;
+        if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme()))
+            return null;
+        return uri.getHost() + uri.getPath();
+    }
+
+    private static final class Resolver implements LSResourceResolver {
+        @Override
+        public LSInput resolveResource(final String type, final String namespaceURI, final String publicId, final String systemId, final String baseURI) {
+            if (systemId == null)
+                return null;
+            final String location;
+            try {
+                location = baseURI == null ? systemId : new URI(baseURI).resolve(systemId).toString();
+            }
+            catch (final URISyntaxException e) {
+                return null;
+            }
+            final String local = locate(location);
+            if (local.equals(location))
+                return null;
+            try {
+                return new Input(publicId, location, baseURI, new URL(local).openStream());
+            }
+            catch (final IOException e) {
+                logger.warn("could not read {} for {}: {}", local, location, e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /** A local copy that identifies itself with the online location. */
+    private static final class Input implements LSInput {
+        private String publicId;
+        private String systemId;
+        private String baseURI;
+        private InputStream byteStream;
+        private Reader characterStream;
+        private String stringData;
+        private String encoding;
+        private boolean certifiedText;
+
+        Input(final String publicId, final String systemId, final String baseURI, final InputStream byteStream) {
+            this.publicId = publicId;
+            this.systemId = systemId;
+            this.baseURI = baseURI;
+            this.byteStream = byteStream;
+        }
+
+        @Override
+        public Reader getCharacterStream() {
+            return characterStream;
+        }
+
+        @Override
+        public void setCharacterStream(final Reader characterStream) {
+            this.characterStream = characterStream;
+        }
+
+        @Override
+        public InputStream getByteStream() {
+            return byteStream;
+        }
+
+        @Override
+        public void setByteStream(final InputStream byteStream) {
+            this.byteStream = byteStream;
+        }
+
+        @Override
+        public String getStringData() {
+            return stringData;
+        }
+
+        @Override
+        public void setStringData(final String stringData) {
+            this.stringData = stringData;
+        }
+
+        @Override
+        public String getSystemId() {
+            return systemId;
+        }
+
+        @Override
+        public void setSystemId(final String systemId) {
+            this.systemId = systemId;
+        }
+
+        @Override
+        public String getPublicId() {
+            return publicId;
+        }
+
+        @Override
+        public void setPublicId(final String publicId) {
+            this.publicId = publicId;
+        }
+
+        @Override
+        public String getBaseURI() {
+            return baseURI;
+        }
+
+        @Override
+        public void setBaseURI(final String baseURI) {
+            this.baseURI = baseURI;
+        }
+
+        @Override
+        public String getEncoding() {
+            return encoding;
+        }
+
+        @Override
+        public void setEncoding(final String encoding) {
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean getCertifiedText() {
+            return certifiedText;
+        }
+
+        @Override
+        public void setCertifiedText(final boolean certifiedText) {
+            this.certifiedText = certifiedText;
+        }
+    }
+}
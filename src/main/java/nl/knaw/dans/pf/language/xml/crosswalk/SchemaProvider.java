@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import javax.xml.validation.Schema;
+
+import org.xml.sax.SAXException;
+
+/**
+ * A validator that can take part in the parse of a {@link Crosswalker}. Instead of reading the XML in a pass of its own, a {@link Schema#newValidatorHandler()
+ * validator handler} is put in front of the {@link CrosswalkHandler}s.
+ */
+public interface SchemaProvider {
+    /**
+     * @return the compiled schema to validate against
+     * @throws SAXException
+     *         if the schema can not be compiled
+     */
+    Schema getSchema() throws SAXException;
+}
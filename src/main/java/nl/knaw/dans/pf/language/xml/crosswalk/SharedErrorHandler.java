@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import nl.knaw.dans.pf.language.xml.validation.XMLErrorHandler;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * The handler behind {@link Crosswalker#getXmlErrorHandler()}, shared by all walks of an instance. Safe for concurrent walks and for a reset while walks are
+ * in progress. Keeps the latest notifications per severity, older ones are only counted, so a handler that is never reset does not grow. The lists it
+ * returns are copies.
+ */
+final class SharedErrorHandler extends XMLErrorHandler {
+    private final Deque<SAXParseException> warnings = new ArrayDeque<SAXParseException>();
+    private final Deque<SAXParseException> errors = new ArrayDeque<SAXParseException>();
+    private final Deque<SAXParseException> fatalErrors = new ArrayDeque<SAXParseException>();
+    private volatile Reporter reporter = Reporter.off;
+    private volatile int maxPerSeverity;
+    private int dropped;
+    private boolean droppedErrors;
+
+    /**
+     * @param maxPerSeverity
+     *        the number of notifications kept for each severity
+     */
+    SharedErrorHandler(final int maxPerSeverity) {
+        super(Reporter.off);
+        this.maxPerSeverity = maxPerSeverity;
+    }
+
+    /**
+     * @param maxPerSeverity
+     *        the number of notifications kept for each severity, applies to the next notifications
+     */
+    void setMaxPerSeverity(final int maxPerSeverity) {
+        this.maxPerSeverity = maxPerSeverity;
+    }
+
+    @Override
+    public void setReporter(final Reporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void warning(final SAXParseException exception) throws SAXException {
+        final XMLErrorHandler reporting = reporting();
+        if (reporting != null)
+            reporting.warning(exception);
+        add(warnings, exception);
+    }
+
+    @Override
+    public void error(final SAXParseException exception) throws SAXException {
+        final XMLErrorHandler reporting = reporting();
+        if (reporting != null)
+            reporting.error(exception);
+        add(errors, exception);
+    }
+
+    @Override
+    public void fatalError(final SAXParseException exception) throws SAXException {
+        final XMLErrorHandler reporting = reporting();
+        if (reporting != null)
+            reporting.fatalError(exception);
+        add(fatalErrors, exception);
+    }
+
+    /** @return a handler that logs like the handler of the library and is then discarded, null if not logging */
+    private XMLErrorHandler reporting() {
+        final Reporter current = reporter;
+        return current == Reporter.off ? null : new XMLErrorHandler(current);
+    }
+
+    private synchronized void add(final Deque<SAXParseException> notifications, final SAXParseException exception) {
+        notifications.addLast(exception);
+        if (notifications.size() > maxPerSeverity) {
+            notifications.removeFirst();
+            dropped++;
+            droppedErrors |= notifications != warnings;
+        }
+    }
+
+    @Override
+    public synchronized List<SAXParseException> getWarnings() {
+        return new ArrayList<SAXParseException>(warnings);
+    }
+
+    @Override
+    public synchronized List<SAXParseException> getErrors() {
+        return new ArrayList<SAXParseException>(errors);
+    }
+
+    @Override
+    public synchronized List<SAXParseException> getFatalErrors() {
+        return new ArrayList<SAXParseException>(fatalErrors);
+    }
+
+    /** @return the number of notifications since the last reset, including those no longer kept */
+    @Override
+    public synchronized int getNotificationCount() {
+        return warnings.size() + errors.size() + fatalErrors.size() + dropped;
+    }
+
+    @Override
+    public synchronized boolean passed() {
+        return errors.isEmpty() && fatalErrors.isEmpty() && !droppedErrors;
+    }
+
+    @Override
+    public synchronized void reset() {
+        warnings.clear();
+        errors.clear();
+        fatalErrors.clear();
+        dropped = 0;
+        droppedErrors = false;
+    }
+
+    /** @return the messages of the notifications that are kept, formatted by the handler of the library */
+    @Override
+    public String getMessages() {
+        final XMLErrorHandler copy = new XMLErrorHandler(Reporter.off);
+        try {
+            for (final SAXParseException e : getWarnings())
+                copy.warning(e);
+            for (final SAXParseException e : getErrors())
+                copy.error(e);
+            for (final SAXParseException e : getFatalErrors())
+                copy.fatalError(e);
+        }
+        catch (final SAXException e) {
+            // a handler that collects does not throw
+            throw new IllegalStateException(e);
+        }
+        return copy.getMessages();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+/**
+ * A view on the characters in a buffer without leading and trailing white space, as defined by {@link String#trim()}. Reflects the buffer as it was at the
+ * last {@link #trim()}, a String is created only by {@link #toString()}.
+ */
+final class TrimmedText implements CharSequence {
+    private final StringBuilder buffer;
+    private int start;
+    private int end;
+
+    TrimmedText(final StringBuilder buffer) {
+        this.buffer = buffer;
+    }
+
+    /** @return this view, adjusted to the current content of the buffer */
+    TrimmedText trim() {
+        int start = 0;
+        int end = buffer.length();
+        while (start < end && buffer.charAt(start) <= ' ')
+            start++;
+        while (end > start && buffer.charAt(end - 1) <= ' ')
+            end--;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length())
+            throw new IndexOutOfBoundsException("index: " + index + " length: " + length());
+        return buffer.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || end > length() || start > end)
+            throw new IndexOutOfBoundsException("start: " + start + " end: " + end + " length: " + length());
+        return buffer.subSequence(this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        return buffer.substring(start, end);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.Validator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+
+/**
+ * The parser configuration shared by the crosswalk, the schema validation and the vocabularies. A document can't make a parse wait for outside resources:
+ * external DTDs and entities are not loaded, and entity expansion is limited. Schemas are configuration rather than input, their imports are still resolved
+ * by the {@link SchemaCatalog}.
+ */
+public final class XMLReaders {
+    private static final Logger logger = LoggerFactory.getLogger(XMLReaders.class);
+
+    /** Plenty for the predefined and character entities of metadata, far too few for an entity bomb. */
+    public static final int ENTITY_EXPANSION_LIMIT = 1000;
+
+    private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+    private static final String EXTERNAL_GENERAL_ENTITIES = "http://xml.org/sax/features/external-general-entities";
+    private static final String EXTERNAL_PARAMETER_ENTITIES = "http://xml.org/sax/features/external-parameter-entities";
+    private static final String JDK_ENTITY_EXPANSION_LIMIT = "http://www.oracle.com/xml/jaxp/properties/entityExpansionLimit";
+
+    /** no instantiation for a utility class */
+    private XMLReaders() {}
+
+    /**
+     * Creates a namespace aware reader with secure processing on. External DTDs and entities are skipped rather than fetched. The reader is not thread safe,
+     * reuse it on the same thread.
+     * 
+     * @return a new reader
+     * @throws SAXException
+     *         if the parser does not support secure processing
+     */
+    public static XMLReader newReader() throws SAXException {
+        // a factory is not thread safe
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        factory.setXIncludeAware(false);
+        final SAXParser parser;
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            disable(factory, LOAD_EXTERNAL_DTD);
+            disable(factory, EXTERNAL_GENERAL_ENTITIES);
+            disable(factory, EXTERNAL_PARAMETER_ENTITIES);
+            parser = factory.newSAXParser();
+        }
+        catch (final ParserConfigurationException e) {
+            throw new SAXException("could not create parser: " + e.getMessage(), e);
+        }
+        try {
+            parser.setProperty(JDK_ENTITY_EXPANSION_LIMIT, Integer.toString(ENTITY_EXPANSION_LIMIT));
+        }
+        catch (final SAXNotRecognizedException e) {
+            logger.warn("{} uses its own entity expansion limit", parser.getClass().getName());
+        }
+        catch (final SAXNotSupportedException e) {
+            logger.warn("{} uses its own entity expansion limit", parser.getClass().getName());
+        }
+        return parser.getXMLReader();
+    }
+
+    /**
+     * Applies the same restrictions to a validator that parses a document by itself, rather than reading the events of a reader. An external DTD is an error
+     * for such a validator, it can't skip it.
+     * 
+     * @param validator
+     * @return the validator
+     */
+    public static Validator harden(final Validator validator) {
+        try {
+            validator.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            validator.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        }
+        catch (final SAXException e) {
+            logger.warn("{} is not hardened: {}", validator.getClass().getName(), e.getMessage());
+        }
+        return validator;
+    }
+
+    private static void disable(final SAXParserFactory factory, final String feature) throws ParserConfigurationException {
+        try {
+            factory.setFeature(feature, false);
+        }
+        catch (final SAXNotRecognizedException e) {
+            logger.warn("{} does not recognize {}", factory.getClass().getName(), feature);
+        }
+        catch (final SAXNotSupportedException e) {
+            logger.warn("{} does not support disabling {}", factory.getClass().getName(), feature);
+        }
+    }
+}
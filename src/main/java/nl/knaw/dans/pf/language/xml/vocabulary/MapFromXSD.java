@@ -15,16 +15,28 @@
  */
 package nl.knaw.dans.pf.language.xml.vocabulary;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.SchemaCatalog;
+import nl.knaw.dans.pf.language.xml.crosswalk.XMLReaders;
 
 import org.dom4j.DocumentException;
 import org.dom4j.Node;
 import org.dom4j.io.SAXReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
 public class MapFromXSD {
     private final Map<String, String> enum2appInfo = new HashMap<String, String>();
@@ -33,6 +45,12 @@ public class MapFromXSD {
 
     private static final Logger logger = LoggerFactory.getLogger(MapFromXSD.class);
 
+    /** Class path root of the maps precomputed at build time, see {@link #main(String[])}. */
+    private static final String RESOURCE_ROOT = "vocabulary/";
+    /** Prefixes of the property keys, followed by the enumeration value. */
+    private static final String APPINFO = "appinfo.";
+    private static final String DOCUMENTATION = "documentation.";
+
     public MapFromXSD(final String xsd) throws DocumentException {
         for (final Node enumerationNode : readEnumerationNodes(xsd)) {
             final String key = enumerationNode.valueOf("@value").trim();
@@ -40,17 +58,143 @@ public class MapFromXSD {
             final String appInfoText = appinfoNode.getText().trim();
             final Node docNode = (Node) enumerationNode.selectNodes(".//xs:documentation").iterator().next();
             final String docText = docNode.getText().trim();
-            getEnum2appInfo().put(key, appInfoText);
-            getAppInfo2doc().put(appInfoText, docText);
-            getEnum2doc().put(key, docText);
+            put(key, appInfoText, docText);
         }
         logger.debug("keys: " + Arrays.toString(getEnum2appInfo().keySet().toArray()));
         logger.debug("values: " + Arrays.toString(getEnum2appInfo().values().toArray()));
     }
 
+    private MapFromXSD(final Properties properties) {
+        for (final String name : properties.stringPropertyNames()) {
+            if (!name.startsWith(APPINFO))
+                continue;
+            final String key = name.substring(APPINFO.length());
+            put(key, properties.getProperty(name), properties.getProperty(DOCUMENTATION + key));
+        }
+    }
+
+    /**
+     * Creates the maps from a resource precomputed at build time, parses the XSD if no such resource is available, for example for custom schemas.
+     * 
+     * @param xsd
+     *        location of the XSD
+     * @return the maps
+     * @throws DocumentException
+     *         if the XSD needs to be parsed and can not be read
+     */
+    public static MapFromXSD load(final String xsd) throws DocumentException {
+        final String resource = toResourceName(xsd);
+        final InputStream inputStream = resource == null ? null : MapFromXSD.class.getClassLoader().getResourceAsStream(resource);
+        if (inputStream == null) {
+            logger.debug("no precomputed vocabulary for {}", xsd);
+            return new MapFromXSD(xsd);
+        }
+        try {
+            return read(inputStream);
+        }
+        catch (final IOException e) {
+            logger.warn("could not read precomputed vocabulary for {}: {}", xsd, e.getMessage());
+            return new MapFromXSD(xsd);
+        }
+        finally {
+            close(inputStream);
+        }
+    }
+
+    /**
+     * Reads maps written by {@link #store(OutputStream, String)}.
+     * 
+     * @param inputStream
+     * @return the maps
+     * @throws IOException
+     */
+    public static MapFromXSD read(final InputStream inputStream) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(inputStream);
+        return new MapFromXSD(properties);
+    }
+
+    /**
+     * Writes the maps as properties, any character of the texts is preserved.
+     * 
+     * @param outputStream
+     * @param comments
+     *        a description of the content
+     * @throws IOException
+     */
+    public void store(final OutputStream outputStream, final String comments) throws IOException {
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, String> entry : enum2appInfo.entrySet()) {
+            properties.setProperty(APPINFO + entry.getKey(), entry.getValue());
+            properties.setProperty(DOCUMENTATION + entry.getKey(), enum2doc.get(entry.getKey()));
+        }
+        properties.store(outputStream, comments);
+    }
+
+    /**
+     * Precomputes the maps at build time.
+     * 
+     * @param args
+     *        the class path root followed by the locations of the XSDs
+     * @throws DocumentException
+     * @throws IOException
+     */
+    public static void main(final String[] args) throws DocumentException, IOException {
+        for (int i = 1; i < args.length; i++) {
+            final String resource = toResourceName(args[i]);
+            if (resource == null)
+                throw new IllegalArgumentException("not an online location: " + args[i]);
+            final File file = new File(args[0], resource);
+            file.getParentFile().mkdirs();
+            final OutputStream outputStream = new FileOutputStream(file);
+            try {
+                new MapFromXSD(args[i]).store(outputStream, "generated from " + args[i]);
+            }
+            finally {
+                outputStream.close();
+            }
+        }
+    }
+
+    /** @return vocabulary/host/path.properties for an online location, null otherwise */
+    private static String toResourceName(final String xsd) {
+        final URI uri;
+        try {
+            uri = new URI(xsd);
+        }
+        catch (final URISyntaxException e) {
+            return null;
+        }
+        if (uri.getHost() == null || uri.getPath() == null)
+            return null;
+        return RESOURCE_ROOT + uri.getHost() + uri.getPath().replaceAll("[.]xsd$", "") + ".properties";
+    }
+
+    private static void close(final InputStream inputStream) {
+        try {
+            inputStream.close();
+        }
+        catch (final IOException e) {
+            // nothing left to read
+        }
+    }
+
+    private void put(final String key, final String appInfoText, final String docText) {
+        getEnum2appInfo().put(key, appInfoText);
+        getAppInfo2doc().put(appInfoText, docText);
+        getEnum2doc().put(key, docText);
+    }
+
     private Node[] readEnumerationNodes(final String xsd) throws DocumentException {
+        final SAXReader reader;
+        try {
+            reader = new SAXReader(XMLReaders.newReader());
+        }
+        catch (final SAXException e) {
+            throw new DocumentException(e.getMessage(), e);
+        }
         @SuppressWarnings("unchecked")
-        final List<Object> nodes = new SAXReader().read(xsd).selectNodes("//xs:enumeration");
+        final List<Object> nodes = reader.read(SchemaCatalog.locate(xsd)).selectNodes("//xs:enumeration");
         return (Node[]) nodes.toArray(new Node[nodes.size()]);
     }
 
@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import nl.knaw.dans.common.lang.util.StreamUtil;
+import nl.knaw.dans.pf.language.emd.EasyMetadata;
+import nl.knaw.dans.pf.language.emd.binding.EmdMarshaller;
+import nl.knaw.dans.pf.language.xml.binding.Encoding;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkException;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkListener;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/** A single crosswalk instance shared by threads that each crosswalk documents with different content. */
+public class Ddm2EmdConcurrencyTest {
+    private static final String[] INPUT = {"spatial.xml", "abr.xml", "ddm.xml", "ddm-with-doi.xml", "ddm-creators-organization-mixed.xml",
+            "NameSpacePrefixVariants.xml"};
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 50;
+
+    @Test
+    public void sharedInstance() throws Exception {
+        runConcurrently(false);
+    }
+
+    @Test
+    public void sharedValidatingInstance() throws Exception {
+        // the schemas and vocabularies are read from the catalog bundled by the build
+        runConcurrently(true);
+    }
+
+    @Test
+    public void sharedLegacyInstance() throws Exception {
+        final String[] ddm = new String[INPUT.length];
+        final String[] expectedEmd = new String[INPUT.length];
+        for (int i = 0; i < INPUT.length; i++) {
+            ddm[i] = readFile(INPUT[i]);
+            expectedEmd[i] = toXml(newCrosswalk(true).createFrom(ddm[i]));
+        }
+
+        final Ddm2EmdCrosswalk crosswalk = newCrosswalk(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int r = 0; r < ROUNDS; r++) {
+                            final int i = (r + offset) % INPUT.length;
+                            assertThat(INPUT[i], toXml(crosswalk.createFrom(ddm[i])), is(expectedEmd[i]));
+                            if (offset == 0)
+                                crosswalk.getXmlErrorHandler().reset();
+                            else
+                                crosswalk.getXmlErrorHandler().getMessages();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Ddm2EmdCrosswalk newCrosswalk(final boolean validating) {
+        return validating ? new Ddm2EmdCrosswalk() : new Ddm2EmdCrosswalk(null);
+    }
+
+    private void runConcurrently(final boolean validating) throws Exception {
+        final String[] ddm = new String[INPUT.length];
+        final String[] expectedEmd = new String[INPUT.length];
+        final String[] expectedMessages = new String[INPUT.length];
+        for (int i = 0; i < INPUT.length; i++) {
+            ddm[i] = readFile(INPUT[i]);
+            final CrosswalkResult<EasyMetadata> result = newCrosswalk(validating).createResultFrom(ddm[i]);
+            expectedEmd[i] = toXml(result.getTarget());
+            expectedMessages[i] = result.getMessages();
+        }
+
+        final Ddm2EmdCrosswalk crosswalk = newCrosswalk(validating);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int r = 0; r < ROUNDS; r++) {
+                            // threads start with different documents
+                            final int i = (r + offset) % INPUT.length;
+                            final CrosswalkResult<EasyMetadata> result = crosswalk.createResultFrom(ddm[i]);
+                            assertThat(INPUT[i], toXml(result.getTarget()), is(expectedEmd[i]));
+                            // the notifications of this document only, not those of the other threads
+                            assertThat(INPUT[i], result.getMessages(), is(expectedMessages[i]));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        // the legacy error handler is not touched by the concurrent calls
+        assertThat(crosswalk.getXmlErrorHandler().getNotificationCount(), is(0));
+    }
+
+    @Test
+    public void batch() throws Exception {
+        final List<Path> paths = new ArrayList<Path>();
+        for (int r = 0; r < ROUNDS; r++)
+            for (final String name : INPUT)
+                paths.add(Paths.get("src/test/resources/input/" + name));
+        final Path missing = Paths.get("src/test/resources/input/doesNot.Exist");
+        paths.add(ROUNDS, missing);
+
+        final Ddm2EmdCrosswalk crosswalk = new Ddm2EmdCrosswalk(null);
+        final String expected = toXml(crosswalk.createResultFrom(paths.get(0).toFile()).getTarget());
+        final AtomicInteger results = new AtomicInteger();
+        final ConcurrentHashMap<Path, CrosswalkException> failures = new ConcurrentHashMap<Path, CrosswalkException>();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            crosswalk.createFrom(paths, executor, new CrosswalkListener<EasyMetadata>() {
+                @Override
+                public void onResult(final Path path, final CrosswalkResult<EasyMetadata> result) {
+                    results.incrementAndGet();
+                    try {
+                        // assertion errors would be swallowed by the executor
+                        if (path.equals(paths.get(0)) && !expected.equals(toXml(result.getTarget())))
+                            failures.put(path, new CrosswalkException("unexpected EMD", null));
+                    }
+                    catch (final Exception e) {
+                        failures.put(path, new CrosswalkException(e.getMessage(), e));
+                    }
+                }
+
+                @Override
+                public void onFailure(final Path path, final CrosswalkException e) {
+                    failures.put(path, e);
+                }
+            });
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertThat(results.get(), is(ROUNDS * INPUT.length));
+        assertThat(failures.keySet().toString(), failures.size(), is(1));
+        assertThat(failures.containsKey(missing), is(true));
+    }
+
+    @Test
+    public void batchKeepsLargePoolBusy() throws Exception {
+        // more threads than documents in flight for the default pool
+        final int threads = 4 * Runtime.getRuntime().availableProcessors() + 2;
+        final List<Path> paths = new ArrayList<Path>();
+        for (int i = 0; i < threads; i++)
+            paths.add(Paths.get("src/test/resources/input/" + INPUT[0]));
+        final CyclicBarrier allBusy = new CyclicBarrier(threads);
+        final AtomicInteger met = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            new Ddm2EmdCrosswalk(null).createFrom(paths, executor, new CrosswalkListener<EasyMetadata>() {
+                @Override
+                public void onResult(final Path path, final CrosswalkResult<EasyMetadata> result) {
+                    try {
+                        allBusy.await(10, TimeUnit.SECONDS);
+                        met.incrementAndGet();
+                    }
+                    catch (final Exception e) {
+                        // a throttled batch never has all threads busy at once
+                    }
+                }
+
+                @Override
+                public void onFailure(final Path path, final CrosswalkException e) {}
+            });
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertThat(met.get(), is(threads));
+    }
+
+    private static String toXml(final EasyMetadata emd) throws Exception {
+        return emd == null ? null : new EmdMarshaller(emd).getXmlString();
+    }
+
+    private static String readFile(final String string) throws Exception {
+        final byte[] xml = StreamUtil.getBytes(new FileInputStream("src/test/resources/input/" + string));
+        return new String(xml, Encoding.UTF8);
+    }
+}
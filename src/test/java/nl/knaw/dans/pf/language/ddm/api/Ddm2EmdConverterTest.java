@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import nl.knaw.dans.pf.language.ddm.api.Ddm2EmdConverter.Latencies;
+import nl.knaw.dans.pf.language.ddm.api.Ddm2EmdConverter.Report;
+
+import org.junit.Test;
+
+public class Ddm2EmdConverterTest {
+    private static final Path DIR = Paths.get("target/test-ddm-converter");
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noInput() throws Exception {
+        new Ddm2EmdConverter("-n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownOption() throws Exception {
+        new Ddm2EmdConverter("-x", "ddm.xml");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noThreads() throws Exception {
+        new Ddm2EmdConverter("-t", "0", "ddm.xml");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingValue() throws Exception {
+        new Ddm2EmdConverter("ddm.xml", "-o");
+    }
+
+    @Test
+    public void outputNextToInput() throws Exception {
+        assertThat(new Ddm2EmdConverter("in/ddm.xml").outputOf(Paths.get("in/a/ddm.xml")), is(Paths.get("in/a/ddm.emd.xml")));
+    }
+
+    @Test
+    public void outputMirrorsInputDirectory() throws Exception {
+        Files.createDirectories(DIR.resolve("in/a"));
+        final Ddm2EmdConverter converter = new Ddm2EmdConverter("-o", "out", DIR.resolve("in").toString(), "other/ddm.xml");
+        assertThat(converter.outputOf(DIR.resolve("in/a/ddm.xml")), is(Paths.get("out/a/ddm.emd.xml")));
+        assertThat(converter.outputOf(Paths.get("other/ddm.xml")), is(Paths.get("out/ddm.emd.xml")));
+    }
+
+    @Test
+    public void percentiles() throws Exception {
+        final Latencies latencies = new Latencies();
+        assertThat(latencies.percentile(50), is(-1L));
+        for (long i = 10; i > 0; i--)
+            latencies.record(i);
+        assertThat(latencies.percentile(50), is(5L));
+        assertThat(latencies.percentile(90), is(9L));
+        assertThat(latencies.percentile(99), is(10L));
+        assertThat(latencies.percentile(0), is(1L));
+    }
+
+    @Test
+    public void largeLatencies() throws Exception {
+        final Latencies latencies = new Latencies();
+        latencies.record(1000000L);
+        latencies.record(3000000L);
+        latencies.record(Long.MAX_VALUE);
+        assertTrue(latencies.percentile(33) >= 1000000L);
+        assertTrue(latencies.percentile(33) <= 1000000L * 17 / 16);
+        assertTrue(latencies.percentile(66) >= 3000000L);
+        assertTrue(latencies.percentile(66) <= 3000000L * 17 / 16);
+        assertThat(latencies.percentile(100), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void buckets() throws Exception {
+        for (final long value : new long[] {0, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE}) {
+            final int bucket = Latencies.bucketOf(value);
+            assertTrue(value + " above its bucket", value <= Latencies.upperBoundOf(bucket));
+            assertTrue(value + " below its bucket", bucket == 0 || value > Latencies.upperBoundOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void convert() throws Exception {
+        final Path in = DIR.resolve("corpus");
+        new DdmGenerator(7).writeCorpus(in, 3);
+        Files.write(in.resolve("broken.xml"), "<ddm:DDM".getBytes("UTF-8"));
+        final Path out = DIR.resolve("emd");
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final Report report = new Ddm2EmdConverter("-n", "-t", "2", "-o", out.toString(), in.toString()).convert(new PrintStream(log, true, "UTF-8"));
+        assertThat(log.toString("UTF-8"), report.getConverted(), is(3));
+        assertThat(report.getFailed(), is(1));
+        assertThat(report.getDocuments(), is(4));
+        assertTrue(Files.isRegularFile(out.resolve("ddm-00002.emd.xml")));
+        assertTrue(report.getLatency(50) > 0);
+        assertTrue(report.toString().contains("latency"));
+    }
+
+    @Test
+    public void unreadableDirectory() throws Exception {
+        final Path in = DIR.resolve("unreadable");
+        new DdmGenerator(7).writeCorpus(in.resolve("a"), 2);
+        final Path locked = Files.createDirectories(in.resolve("b"));
+        Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+        try {
+            assumeTrue("permissions are not enforced", !Files.isReadable(locked));
+            final ByteArrayOutputStream log = new ByteArrayOutputStream();
+            final Report report = new Ddm2EmdConverter("-n", "-t", "2", "-o", DIR.resolve("unreadable-emd").toString(), in.toString())
+                    .convert(new PrintStream(log, true, "UTF-8"));
+            assertThat(log.toString("UTF-8"), report.getConverted(), is(2));
+            assertThat(report.getFailed(), is(1));
+        }
+        finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+}
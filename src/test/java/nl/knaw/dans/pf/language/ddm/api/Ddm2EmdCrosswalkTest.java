@@ -17,11 +17,22 @@ package nl.knaw.dans.pf.language.ddm.api;
 
 import nl.knaw.dans.pf.language.emd.EasyMetadata;
 import nl.knaw.dans.pf.language.emd.binding.EmdMarshaller;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkCache;
 import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkException;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkHandler;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkHandlerMap;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
+import nl.knaw.dans.pf.language.xml.crosswalk.Crosswalker.ValidationMode;
 import nl.knaw.dans.pf.language.xml.exc.XMLSerializationException;
 import org.dom4j.tree.DefaultElement;
 import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.core.Is.is;
@@ -265,6 +276,173 @@ public class Ddm2EmdCrosswalkTest {
         assertThat(sub.attribute("scheme").getValue(), is("ABR"));
     }
 
+    @Test
+    public void emdChecks() throws Exception {
+        // @formatter:off
+        String ddm = "<?xml version='1.0' encoding='utf-8'?><ddm:DDM" +
+                "  xmlns:ddm='http://easy.dans.knaw.nl/schemas/md/ddm/'" +
+                "  xmlns:dc='http://purl.org/dc/elements/1.1/'" +
+                ">" +
+                " <ddm:profile>" +
+                "  <dc:title>Title</dc:title>" +
+                " </ddm:profile>" +
+                "</ddm:DDM>";
+        // @formatter:on
+
+        Ddm2EmdCrosswalk crosswalk = new Ddm2EmdCrosswalk(null);
+        String expected = new EmdMarshaller(crosswalk.createFrom(ddm)).getXmlString();
+        for (Ddm2EmdCrosswalk.EmdCheck emdCheck : Ddm2EmdCrosswalk.EmdCheck.values()) {
+            crosswalk.setEmdCheck(emdCheck);
+            assertThat(emdCheck.name(), new EmdMarshaller(crosswalk.createResultFrom(ddm).getTarget()).getXmlString(), is(expected));
+        }
+    }
+
+    @Test
+    public void cachedResults() throws Exception {
+        // @formatter:off
+        String ddm = "<?xml version='1.0' encoding='utf-8'?><ddm:DDM" +
+                "  xmlns:ddm='http://easy.dans.knaw.nl/schemas/md/ddm/'" +
+                "  xmlns:dc='http://purl.org/dc/elements/1.1/'" +
+                ">" +
+                " <ddm:profile>" +
+                "  <dc:title>Title</dc:title>" +
+                " </ddm:profile>" +
+                "</ddm:DDM>";
+        // @formatter:on
+
+        Ddm2EmdCrosswalk crosswalk = new Ddm2EmdCrosswalk(null);
+        CrosswalkCache<EasyMetadata> cache = new CrosswalkCache<EasyMetadata>(1 << 20);
+        crosswalk.setCache(cache);
+        EasyMetadata first = crosswalk.createResultFrom(ddm).getTarget();
+        EasyMetadata second = crosswalk.createResultFrom(ddm).getTarget();
+        assertThat(cache.getHits(), is(1L));
+        assertThat(second == first, is(false));
+        assertThat(new EmdMarshaller(second).getXmlString(), is(new EmdMarshaller(first).getXmlString()));
+
+        // another setting, another key
+        crosswalk.setEmdCheck(Ddm2EmdCrosswalk.EmdCheck.SKIP);
+        crosswalk.createResultFrom(ddm);
+        assertThat(cache.getMisses(), is(2L));
+
+        crosswalk.setValidationMode(ValidationMode.SINGLE_PASS);
+        crosswalk.createResultFrom(ddm);
+        assertThat(cache.getMisses(), is(3L));
+
+        // a stream is read into memory for its key
+        crosswalk.createResultFrom(new ByteArrayInputStream(ddm.getBytes("UTF-8")));
+        crosswalk.createResultFrom(new ByteArrayInputStream(ddm.getBytes("UTF-8")));
+        assertThat(cache.getMisses(), is(4L));
+        assertThat(cache.getHits(), is(2L));
+    }
+
+    @Test
+    public void cachedVerdicts() throws Exception {
+        // @formatter:off
+        String ddm = "<?xml version='1.0' encoding='utf-8'?><ddm:DDM" +
+                "  xmlns:ddm='http://easy.dans.knaw.nl/schemas/md/ddm/'" +
+                "  xmlns:dc='http://purl.org/dc/elements/1.1/'" +
+                "  xmlns:gml='http://www.opengis.net/gml'" +
+                "  xmlns:dcx-gml='http://easy.dans.knaw.nl/schemas/dcx/gml/'" +
+                ">" +
+                " <ddm:profile>" +
+                "  <dc:title>Title</dc:title>" +
+                " </ddm:profile>" +
+                " <ddm:dcmiMetadata>" +
+                "  <dcx-gml:spatial><gml:Point><gml:pos>1.0</gml:pos></gml:Point></dcx-gml:spatial>" +
+                " </ddm:dcmiMetadata>" +
+                "</ddm:DDM>";
+        // @formatter:on
+
+        Ddm2EmdCrosswalk crosswalk = new Ddm2EmdCrosswalk(null);
+        CrosswalkCache<EasyMetadata> cache = new CrosswalkCache<EasyMetadata>(1 << 20);
+        crosswalk.setCache(cache);
+        CrosswalkResult<EasyMetadata> verdict = crosswalk.validate(ddm);
+        assertThat(verdict.passed(), is(false));
+        assertThat(verdict.getErrors().size(), is(1));
+        assertThat(crosswalk.validate(ddm).getMessages(), is(verdict.getMessages()));
+        assertThat(cache.getHits(), is(1L));
+
+        // a verdict is not a result
+        crosswalk.createResultFrom(ddm);
+        assertThat(cache.getMisses(), is(2L));
+    }
+
+    @Test
+    public void otherHandlerMapRequiresCacheKey() throws Exception {
+        // @formatter:off
+        String ddm = "<?xml version='1.0' encoding='utf-8'?><ddm:DDM" +
+                "  xmlns:ddm='http://easy.dans.knaw.nl/schemas/md/ddm/'" +
+                "  xmlns:dc='http://purl.org/dc/elements/1.1/'" +
+                ">" +
+                " <ddm:profile>" +
+                "  <dc:title>Title</dc:title>" +
+                " </ddm:profile>" +
+                "</ddm:DDM>";
+        // @formatter:on
+
+        Ddm2EmdCrosswalk crosswalk = new Ddm2EmdCrosswalk(null);
+        final CrosswalkHandlerMap<EasyMetadata> defaultMap = crosswalk.handlerMap;
+        crosswalk.handlerMap = new CrosswalkHandlerMap<EasyMetadata>() {
+            @Override
+            public CrosswalkHandler<EasyMetadata> getHandler(String uri, String localName, Attributes attributes) throws SAXException {
+                return defaultMap.getHandler(uri, localName, attributes);
+            }
+
+            @Override
+            public boolean reportMissingHandler(String uri, String localName, Attributes attributes) throws SAXException {
+                return defaultMap.reportMissingHandler(uri, localName, attributes);
+            }
+        };
+        CrosswalkCache<EasyMetadata> cache = new CrosswalkCache<EasyMetadata>(1 << 20);
+        crosswalk.setCache(cache);
+        crosswalk.createResultFrom(ddm);
+        assertThat(cache.getSize(), is(0));
+
+        crosswalk.setCacheKey("delegating");
+        CrosswalkResult<EasyMetadata> first = crosswalk.createResultFrom(ddm);
+        CrosswalkResult<EasyMetadata> second = crosswalk.createResultFrom(ddm);
+        assertThat(cache.getHits(), is(1L));
+        assertThat(first.isCached(), is(false));
+        assertThat(second.isCached(), is(true));
+        assertThat(second.getNanos(Phase.CROSSWALK), is(0L));
+    }
+
+    @Test
+    public void additionalXmlSkipped() throws Exception {
+        // @formatter:off
+        String ddm = "<?xml version='1.0' encoding='utf-8'?><ddm:DDM" +
+                "  xmlns:ddm='http://easy.dans.knaw.nl/schemas/md/ddm/'" +
+                "  xmlns:dc='http://purl.org/dc/elements/1.1/'" +
+                ">" +
+                " <ddm:profile>" +
+                "  <dc:title>Title</dc:title>" +
+                " </ddm:profile>" +
+                " <ddm:additional-xml>" +
+                "  <a><b><c><dc:title>not a title</dc:title><d>deep</d></c></b></a>" +
+                " </ddm:additional-xml>" +
+                "</ddm:DDM>";
+        // @formatter:on
+
+        Ddm2EmdCrosswalk crosswalk = new Ddm2EmdCrosswalk(null);
+        final CrosswalkHandlerMap<EasyMetadata> defaultMap = crosswalk.handlerMap;
+        final List<String> lookedUp = new ArrayList<String>();
+        crosswalk.handlerMap = new CrosswalkHandlerMap<EasyMetadata>() {
+            @Override
+            public CrosswalkHandler<EasyMetadata> getHandler(String uri, String localName, Attributes attributes) throws SAXException {
+                lookedUp.add(localName);
+                return defaultMap.getHandler(uri, localName, attributes);
+            }
+
+            @Override
+            public boolean reportMissingHandler(String uri, String localName, Attributes attributes) throws SAXException {
+                return defaultMap.reportMissingHandler(uri, localName, attributes);
+            }
+        };
+        CrosswalkResult<EasyMetadata> result = crosswalk.createResultFrom(ddm);
+        assertThat(lookedUp, is(Arrays.asList("DDM", "profile", "title", "additional-xml")));
+        assertThat(result.getWarnings().size(), is(0));
+    }
+
     private DefaultElement firstEmdElementFrom(String ddm) throws XMLSerializationException, CrosswalkException {
         EasyMetadata emd = new Ddm2EmdCrosswalk(null).createFrom(ddm);
         return (DefaultElement) new EmdMarshaller(emd).getXmlElement().elementIterator().next();
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import nl.knaw.dans.pf.language.ddm.datehandlers.EasValidHandler;
+import nl.knaw.dans.pf.language.ddm.datehandlers.TermsValidHandler;
+import nl.knaw.dans.pf.language.ddm.handlermaps.NameSpace;
+import nl.knaw.dans.pf.language.ddm.handlers.SkippedFieldHandler;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class Ddm2EmdHandlerMapTest {
+    private static final Ddm2EmdHandlerMap MAP = Ddm2EmdHandlerMap.getInstance();
+    private static final String TERMS = NameSpace.DC_TERMS.uri;
+
+    private static Attributes typed(final String xsiType) {
+        final AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute(NameSpace.XSI.uri, "type", "xsi:type", "CDATA", xsiType);
+        return attributes;
+    }
+
+    @Test
+    public void untyped() throws Exception {
+        assertTrue(MAP.getHandler(TERMS, "valid", new AttributesImpl()) instanceof TermsValidHandler);
+        assertThat(MAP.reportMissingHandler(TERMS, "valid", new AttributesImpl()), is(false));
+    }
+
+    @Test
+    public void prefixedType() throws Exception {
+        assertTrue(MAP.getHandler(TERMS, "valid", typed("dcterms:W3CDTF")) instanceof EasValidHandler);
+        assertTrue(MAP.getHandler(TERMS, "valid", typed("any:W3CDTF")) instanceof EasValidHandler);
+    }
+
+    @Test
+    public void unprefixedType() throws Exception {
+        assertTrue(MAP.getHandler(TERMS, "valid", typed("W3CDTF")) instanceof EasValidHandler);
+    }
+
+    @Test
+    public void unknownType() throws Exception {
+        assertThat(MAP.getHandler(TERMS, "valid", typed("dcterms:Period")), nullValue());
+        assertThat(MAP.getHandler(TERMS, "valid", typed("W3CDTFX")), nullValue());
+        assertThat(MAP.getHandler(TERMS, "valid", typed("dcterms:W3C")), nullValue());
+        assertThat(MAP.reportMissingHandler(TERMS, "valid", typed("dcterms:Period")), is(true));
+    }
+
+    @Test
+    public void typeOfOtherElement() throws Exception {
+        // DisciplineType is configured for dcterms:audience only
+        assertThat(MAP.getHandler(TERMS, "valid", typed("narcis:DisciplineType")), nullValue());
+        assertThat(MAP.getHandler(TERMS, "audience", typed("narcis:DisciplineType")), notNullValue());
+    }
+
+    @Test
+    public void defaultNamespace() throws Exception {
+        // the parser reports the namespace of an element without prefix, so <additional-xml xmlns="...ddm/"> is found as well
+        assertTrue(MAP.getHandler(NameSpace.DDM.uri, "additional-xml", new AttributesImpl()) instanceof SkippedFieldHandler);
+        assertThat(MAP.getHandler("", "valid", new AttributesImpl()), nullValue());
+        assertThat(MAP.reportMissingHandler("", "valid", new AttributesImpl()), is(true));
+    }
+
+    @Test
+    public void unknownElement() throws Exception {
+        assertThat(MAP.getHandler(TERMS, "unknown", new AttributesImpl()), nullValue());
+        assertThat(MAP.getHandler("http://example.com/", "valid", typed("W3CDTF")), nullValue());
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import static nl.knaw.dans.pf.language.ddm.handlermaps.NameSpace.*;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import nl.knaw.dans.pf.language.ddm.handlermaps.NameSpace;
+import nl.knaw.dans.pf.language.ddm.handlers.EasSpatialHandler;
+
+/**
+ * Writes synthetic DDM documents that are valid against the schemas of the {@link DDMValidator}, for load and scaling tests. The content is determined by the
+ * seed and the configured sizes, the documents are streamed so their size is not limited by the heap.
+ */
+public class DdmGenerator {
+    private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+    private static final NameSpace[] DECLARED = {DDM, DC, DC_TERMS, DCX_DAI, DCX_GML, GML, XSI, ABR};
+    private static final String[] RELATIONS = {"relation", "conformsTo", "isVersionOf", "hasVersion", "isReplacedBy", "replaces", "isRequiredBy", "requires",
+            "isPartOf", "hasPart", "isReferencedBy", "references", "isFormatOf", "hasFormat"};
+    private static final String[] ABR_PERIODS = {"PALEO", "PALEOLB", "MESO", "NEO", "BRONS", "IJZ", "ROM", "VME", "LME", "NT"};
+    private static final String[] ABR_COMPLEXES = {"EGVW"};
+    private static final String[] WORDS = {"archive", "data", "excavation", "survey", "site", "settlement", "pottery", "burial", "farm", "river", "dune",
+            "medieval", "roman", "trench", "find", "sample", "layer", "analysis", "report", "region"};
+    private static final String[] TITLES = {"dr.", "prof.", "MSc.", "ir."};
+    private static final String[] INSERTIONS = {"van", "de", "van der", "ter"};
+    private static final String[] ORGANIZATIONS = {"DANS", "KNAW", "NWO", "RCE"};
+
+    private final long seed;
+    private int creators = 1;
+    private int spatialPoints;
+    private int spatialEnvelopes;
+    private int descriptionParagraphs = 1;
+    private int relations;
+    private int abrSubjects;
+
+    /**
+     * @param seed
+     *        the same seed and sizes produce the same documents
+     */
+    public DdmGenerator(final long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param creators
+     *        the number of creators with a DAI, at least one
+     */
+    public void setCreators(final int creators) {
+        if (creators < 1)
+            throw new IllegalArgumentException("a DDM requires a creator");
+        this.creators = creators;
+    }
+
+    /** @param spatialPoints alternately in degrees and RD */
+    public void setSpatialPoints(final int spatialPoints) {
+        this.spatialPoints = spatialPoints;
+    }
+
+    /** @param spatialEnvelopes in RD */
+    public void setSpatialEnvelopes(final int spatialEnvelopes) {
+        this.spatialEnvelopes = spatialEnvelopes;
+    }
+
+    /** @param descriptionParagraphs of the description, each of a few hundred characters */
+    public void setDescriptionParagraphs(final int descriptionParagraphs) {
+        this.descriptionParagraphs = descriptionParagraphs;
+    }
+
+    /** @param relations of various types */
+    public void setRelations(final int relations) {
+        this.relations = relations;
+    }
+
+    /** @param abrSubjects the number of archaeological subjects and periods, each */
+    public void setAbrSubjects(final int abrSubjects) {
+        this.abrSubjects = abrSubjects;
+    }
+
+    /**
+     * Writes a corpus of documents named ddm-00000.xml and so on, each document with a seed derived from the seed of the generator.
+     * 
+     * @param dir
+     *        created if it does not exist
+     * @param documents
+     *        the number of documents
+     */
+    public void writeCorpus(final Path dir, final int documents) throws IOException, XMLStreamException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < documents; i++)
+            write(dir.resolve(String.format(Locale.ROOT, "ddm-%05d.xml", i)), seed + i);
+    }
+
+    /** @param file overwritten if it exists */
+    public void write(final Path file) throws IOException, XMLStreamException {
+        write(file, seed);
+    }
+
+    /** @param out receives the document in UTF-8, not closed */
+    public void write(final OutputStream out) throws XMLStreamException {
+        write(out, seed);
+    }
+
+    private void write(final Path file, final long documentSeed) throws IOException, XMLStreamException {
+        final OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+        try {
+            write(out, documentSeed);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private void write(final OutputStream out, final long documentSeed) throws XMLStreamException {
+        final Random random = new Random(documentSeed);
+        final XMLStreamWriter writer = FACTORY.createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement(DDM.prefix, "DDM", DDM.uri);
+        for (final NameSpace ns : DECLARED)
+            writer.writeNamespace(ns.prefix, ns.uri);
+        writer.writeAttribute(XSI.prefix, XSI.uri, "schemaLocation", DDM.uri + " " + DDM.xsd);
+
+        writer.writeStartElement(DDM.uri, "profile");
+        element(writer, DC, "title", "Synthetic dataset " + documentSeed);
+        writer.writeStartElement(DC_TERMS.uri, "description");
+        for (int i = 0; i < descriptionParagraphs; i++)
+            writer.writeCharacters(paragraph(random) + "\n");
+        writer.writeEndElement();
+        for (int i = 0; i < creators; i++)
+            creator(writer, random);
+        final String created = String.format(Locale.ROOT, "%04d-%02d-%02d", 1950 + random.nextInt(70), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        element(writer, DDM, "created", created);
+        element(writer, DDM, "audience", "D41500");
+        element(writer, DDM, "accessRights", "OPEN_ACCESS");
+        writer.writeEndElement();
+
+        writer.writeStartElement(DDM.uri, "dcmiMetadata");
+        for (int i = 0; i < relations; i++)
+            element(writer, DC_TERMS, RELATIONS[i % RELATIONS.length], "http://example.org/dataset/" + random.nextInt(1000000));
+        for (int i = 0; i < abrSubjects; i++) {
+            typedElement(writer, DC, "subject", "abr:ABRcomplex", ABR_COMPLEXES[random.nextInt(ABR_COMPLEXES.length)]);
+            typedElement(writer, DC_TERMS, "temporal", "abr:ABRperiode", ABR_PERIODS[random.nextInt(ABR_PERIODS.length)]);
+        }
+        for (int i = 0; i < spatialPoints; i++)
+            point(writer, random, i % 2 == 0);
+        for (int i = 0; i < spatialEnvelopes; i++)
+            envelope(writer, random);
+        writer.writeEndElement();
+
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+    }
+
+    private static void creator(final XMLStreamWriter writer, final Random random) throws XMLStreamException {
+        writer.writeStartElement(DCX_DAI.uri, "creatorDetails");
+        writer.writeStartElement(DCX_DAI.uri, "author");
+        writer.writeStartElement(DCX_DAI.uri, "titles");
+        writer.writeAttribute(XMLConstants.XML_NS_URI, "lang", "en");
+        writer.writeCharacters(TITLES[random.nextInt(TITLES.length)]);
+        writer.writeEndElement();
+        element(writer, DCX_DAI, "initials", "" + (char) ('A' + random.nextInt(26)));
+        if (random.nextBoolean())
+            element(writer, DCX_DAI, "insertions", INSERTIONS[random.nextInt(INSERTIONS.length)]);
+        element(writer, DCX_DAI, "surname", capitalize(word(random)) + random.nextInt(10000));
+        element(writer, DCX_DAI, "DAI", dai(random));
+        writer.writeStartElement(DCX_DAI.uri, "organization");
+        writer.writeStartElement(DCX_DAI.uri, "name");
+        writer.writeAttribute(XMLConstants.XML_NS_URI, "lang", "en");
+        writer.writeCharacters(ORGANIZATIONS[random.nextInt(ORGANIZATIONS.length)]);
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void point(final XMLStreamWriter writer, final Random random, final boolean degrees) throws XMLStreamException {
+        writer.writeStartElement(DCX_GML.uri, "spatial");
+        writer.writeStartElement(GML.uri, "Point");
+        if (degrees) {
+            writer.writeAttribute("srsName", EasSpatialHandler.EPSG_URL_WGS84);
+            // y x
+            element(writer, GML, "pos", coordinate(random, 50.75, 53.5) + " " + coordinate(random, 3.3, 7.2));
+        } else {
+            writer.writeAttribute("srsName", EasSpatialHandler.EPSG_URL_RD);
+            // x y
+            element(writer, GML, "pos", coordinate(random, 0, 280000) + " " + coordinate(random, 300000, 625000));
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void envelope(final XMLStreamWriter writer, final Random random) throws XMLStreamException {
+        final double x = 280000 * random.nextDouble();
+        final double y = 300000 + 325000 * random.nextDouble();
+        writer.writeStartElement(DCX_GML.uri, "spatial");
+        writer.writeStartElement(GML.uri, "boundedBy");
+        writer.writeStartElement(GML.uri, "Envelope");
+        writer.writeAttribute("srsName", EasSpatialHandler.EPSG_URL_RD);
+        element(writer, GML, "lowerCorner", String.format(Locale.ROOT, "%.1f %.1f", x, y));
+        element(writer, GML, "upperCorner", String.format(Locale.ROOT, "%.1f %.1f", x + 1000 * random.nextDouble(), y + 1000 * random.nextDouble()));
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void element(final XMLStreamWriter writer, final NameSpace ns, final String localName, final String value) throws XMLStreamException {
+        writer.writeStartElement(ns.uri, localName);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    private static void typedElement(final XMLStreamWriter writer, final NameSpace ns, final String localName, final String type, final String value)
+            throws XMLStreamException
+    {
+        writer.writeStartElement(ns.uri, localName);
+        writer.writeAttribute(XSI.prefix, XSI.uri, "type", type);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    private static String coordinate(final Random random, final double min, final double max) {
+        return String.format(Locale.ROOT, "%.5f", min + (max - min) * random.nextDouble());
+    }
+
+    private static String paragraph(final Random random) {
+        final StringBuilder sb = new StringBuilder();
+        for (int sentence = 0; sentence < 5; sentence++) {
+            final int words = 6 + random.nextInt(10);
+            for (int i = 0; i < words; i++)
+                sb.append(i == 0 ? capitalize(word(random)) : word(random)).append(i == words - 1 ? ". " : " ");
+        }
+        return sb.toString().trim();
+    }
+
+    private static String word(final Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(final String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /** @return nine digits followed by the modulo 11 check digit of a DAI, numbers with check digit X are avoided */
+    static String dai(final Random random) {
+        while (true) {
+            final String digits = String.format(Locale.ROOT, "%09d", random.nextInt(1000000000));
+            final int check = daiCheckDigit(digits);
+            if (check < 10)
+                return digits + check;
+        }
+    }
+
+    static int daiCheckDigit(final String digits) {
+        int sum = 0;
+        int weight = 2;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            sum += weight * (digits.charAt(i) - '0');
+            weight = weight == 9 ? 2 : weight + 1;
+        }
+        return (11 - sum % 11) % 11;
+    }
+}
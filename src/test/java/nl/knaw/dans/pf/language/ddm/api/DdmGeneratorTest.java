@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import nl.knaw.dans.pf.language.ddm.handlermaps.NameSpace;
+import nl.knaw.dans.pf.language.emd.EasyMetadata;
+import nl.knaw.dans.pf.language.xml.validation.XMLErrorHandler;
+
+import org.junit.Test;
+
+public class DdmGeneratorTest {
+    private static final Path DIR = Paths.get("target/test-ddm-generator");
+
+    private static DdmGenerator newGenerator(final long seed) {
+        final DdmGenerator generator = new DdmGenerator(seed);
+        generator.setCreators(20);
+        generator.setSpatialPoints(10);
+        generator.setSpatialEnvelopes(5);
+        generator.setDescriptionParagraphs(3);
+        generator.setRelations(30);
+        generator.setAbrSubjects(4);
+        return generator;
+    }
+
+    private static byte[] generate(final long seed) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        newGenerator(seed).write(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void deterministic() throws Exception {
+        assertTrue(Arrays.equals(generate(42), generate(42)));
+        assertFalse(Arrays.equals(generate(42), generate(43)));
+    }
+
+    @Test
+    public void daiCheckDigit() throws Exception {
+        // a valid and an invalid DAI of CrosswalkInlineTest
+        assertThat(DdmGenerator.daiCheckDigit("987654321"), is(6));
+        assertThat(DdmGenerator.daiCheckDigit("123456789") == 10, is(false));
+    }
+
+    @Test
+    public void corpus() throws Exception {
+        final DdmGenerator generator = new DdmGenerator(1);
+        generator.setCreators(10000);
+        generator.writeCorpus(DIR, 3);
+        for (int i = 0; i < 3; i++)
+            assertTrue(Files.size(DIR.resolve(String.format("ddm-%05d.xml", i))) > 10000 * 100);
+    }
+
+    @Test
+    public void crosswalk() throws Exception {
+        final EasyMetadata emd = new Ddm2EmdCrosswalk().createFromValidated(new String(generate(7), "UTF-8"));
+        assertThat(emd.getEmdCreator().getEasCreator().size(), is(20));
+        assertThat(emd.getEmdCoverage().getEasSpatial().size(), is(15));
+    }
+
+    @Test
+    public void valid() throws Exception {
+        assumeTrue("can access " + NameSpace.DDM.xsd, canConnect(NameSpace.DDM.xsd));
+        final File file = DIR.resolve("valid.xml").toFile();
+        Files.createDirectories(DIR);
+        newGenerator(11).write(file.toPath());
+        final XMLErrorHandler handler = new DDMValidator().validate(file);
+        assertTrue(handler.getMessages(), handler.passed());
+    }
+
+    private static boolean canConnect(final String url) {
+        try {
+            final HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+            urlConnection.connect();
+            urlConnection.disconnect();
+            return true;
+        }
+        catch (final IOException e) {
+            return false;
+        }
+    }
+}
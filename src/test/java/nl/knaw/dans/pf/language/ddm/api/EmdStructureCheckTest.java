@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import nl.knaw.dans.pf.language.ddm.api.Ddm2EmdCrosswalk.EmdCheck;
+import nl.knaw.dans.pf.language.emd.EasyMetadata;
+import nl.knaw.dans.pf.language.emd.binding.EasyMetadataFactory;
+import nl.knaw.dans.pf.language.emd.binding.EmdMarshaller;
+import nl.knaw.dans.pf.language.emd.types.ApplicationSpecific.MetadataFormat;
+import nl.knaw.dans.pf.language.emd.types.BasicString;
+import nl.knaw.dans.pf.language.emd.types.IsoDate;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkException;
+import nl.knaw.dans.pf.language.xml.exc.XMLSerializationException;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class EmdStructureCheckTest {
+
+    @Test
+    public void complete() throws Exception {
+        EasyMetadata emd = EasyMetadataFactory.newEasyMetadata(MetadataFormat.DEFAULT);
+        emd.getEmdTitle().getDcTitle().add(new BasicString("title"));
+        IsoDate date = new IsoDate();
+        date.setValueAsString("2016-10-18");
+        emd.getEmdDate().getEasCreated().add(date);
+
+        assertThat(EmdStructureCheck.findIncompleteFields(emd), is(Collections.<String> emptyList()));
+    }
+
+    @Test
+    public void incomplete() throws Exception {
+        EasyMetadata emd = EasyMetadataFactory.newEasyMetadata(MetadataFormat.DEFAULT);
+        emd.getEmdTitle().getDcTitle().add(new BasicString("title"));
+        emd.getEmdTitle().getDcTitle().add(null);
+        emd.getEmdDate().getTermsCreated().add(null);
+
+        // the order of the fields is not specified
+        Set<String> fields = new HashSet<String>(EmdStructureCheck.findIncompleteFields(emd));
+        assertThat(fields, is((Set<String>) new HashSet<String>(Arrays.asList("EmdTitle.DcTitle", "EmdDate.TermsCreated"))));
+    }
+
+    @Test
+    public void noSideEffects() throws Exception {
+        EasyMetadata emd = EasyMetadataFactory.newEasyMetadata(MetadataFormat.DEFAULT);
+        emd.getEmdTitle().getDcTitle().add(new BasicString("title"));
+        String before = new EmdMarshaller(emd).getXmlString();
+
+        EmdStructureCheck.findIncompleteFields(emd);
+        assertThat(new EmdMarshaller(emd).getXmlString(), is(before));
+    }
+
+    @Test
+    public void sameAsMarshal() throws Exception {
+        for (File file : new File("src/test/resources/input").listFiles()) {
+            if (!file.getName().endsWith(".xml") || file.getName().startsWith("emd"))
+                continue;
+            assertThat(file.getName(), crosswalk(file, EmdCheck.STRUCTURAL), is(crosswalk(file, EmdCheck.MARSHAL)));
+        }
+    }
+
+    @Test
+    public void sameAsMarshalOnModel() throws Exception {
+        for (boolean complete : new boolean[] {true, false}) {
+            assertThat(check(newEmd(complete), EmdCheck.STRUCTURAL), is(check(newEmd(complete), EmdCheck.MARSHAL)));
+        }
+    }
+
+    private static EasyMetadata newEmd(boolean complete) {
+        EasyMetadata emd = EasyMetadataFactory.newEasyMetadata(MetadataFormat.DEFAULT);
+        emd.getEmdTitle().getDcTitle().add(new BasicString("title"));
+        emd.getEmdSubject().getDcSubject().add(complete ? new BasicString("subject") : new BasicString());
+        return emd;
+    }
+
+    /** @return the serialized EMD, or the verdict if the check rejects it */
+    private static String check(EasyMetadata emd, EmdCheck emdCheck) {
+        if (emdCheck == EmdCheck.STRUCTURAL && !EmdStructureCheck.findIncompleteFields(emd).isEmpty())
+            return "rejected";
+        try {
+            return new EmdMarshaller(emd).getXmlString();
+        }
+        catch (XMLSerializationException e) {
+            return "rejected";
+        }
+    }
+
+    /** @return the serialized EMD, or the verdict if the check rejects it */
+    private static String crosswalk(File file, EmdCheck emdCheck) throws Exception {
+        Ddm2EmdCrosswalk crosswalk = new Ddm2EmdCrosswalk(null);
+        crosswalk.setEmdCheck(emdCheck);
+        try {
+            return new EmdMarshaller(crosswalk.createFrom(file)).getXmlString();
+        }
+        catch (CrosswalkException e) {
+            return "rejected";
+        }
+    }
+}
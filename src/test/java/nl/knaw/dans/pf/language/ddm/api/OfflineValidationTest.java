@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.ddm.api;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URI;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.SchemaCatalog;
+import nl.knaw.dans.pf.language.xml.validation.XMLErrorHandler;
+
+import org.junit.Test;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.SAXParseException;
+
+/** Validation with the schemas bundled by the build, any lookup that would go online fails the test. */
+public class OfflineValidationTest {
+    private static final LSResourceResolver OFFLINE = new LSResourceResolver() {
+        @Override
+        public LSInput resolveResource(final String type, final String namespaceURI, final String publicId, final String systemId, final String baseURI) {
+            final LSInput input = SchemaCatalog.getResourceResolver().resolveResource(type, namespaceURI, publicId, systemId, baseURI);
+            if (input == null && systemId != null)
+                throw new IllegalStateException("no local copy of " + (baseURI == null ? systemId : URI.create(baseURI).resolve(systemId)));
+            return input;
+        }
+    };
+
+    @Test
+    public void spatial() throws Exception {
+        final Source[] sources = new Source[DDMValidator.XSDS.length];
+        for (int i = 0; i < sources.length; i++) {
+            assertFalse("no local copy of " + DDMValidator.XSDS[i], SchemaCatalog.locate(DDMValidator.XSDS[i]).equals(DDMValidator.XSDS[i]));
+            sources[i] = SchemaCatalog.newSource(DDMValidator.XSDS[i]);
+        }
+        final SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        factory.setResourceResolver(OFFLINE);
+        final Schema schema = factory.newSchema(sources);
+
+        final Validator validator = schema.newValidator();
+        validator.setResourceResolver(OFFLINE);
+        final XMLErrorHandler handler = new XMLErrorHandler();
+        validator.setErrorHandler(handler);
+        validator.validate(new StreamSource(new File("src/test/resources/input/spatial.xml")));
+        for (final SAXParseException e : handler.getWarnings())
+            assertThat(e.getMessage(), e.getMessage().contains("schema_reference"), is(false));
+        assertThat(handler.getMessages(), handler.passed(), is(true));
+    }
+}
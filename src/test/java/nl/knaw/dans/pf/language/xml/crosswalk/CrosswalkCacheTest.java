@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkCache.Key;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkDiagnostic.Severity;
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
+
+import org.junit.Test;
+
+public class CrosswalkCacheTest {
+    private static final List<CrosswalkDiagnostic> NONE = Collections.emptyList();
+
+    private static CrosswalkResult<StringBuilder> result(final String target) {
+        return new CrosswalkResult<StringBuilder>(new StringBuilder(target), NONE, NONE, NONE, 0, false, new long[3]);
+    }
+
+    private static Key key(final String xml) {
+        return CrosswalkCache.key(xml.getBytes(), "v1");
+    }
+
+    @Test
+    public void hitReturnsCopy() {
+        final CrosswalkCache<StringBuilder> cache = new CrosswalkCache<StringBuilder>(100000);
+        assertThat(cache.get(key("<a/>")), nullValue());
+        final CrosswalkResult<StringBuilder> original = result("abc");
+        cache.put(key("<a/>"), original);
+        original.getTarget().append("def");
+
+        final CrosswalkResult<StringBuilder> hit = cache.get(key("<a/>"));
+        assertThat(hit.getTarget().toString(), is("abc"));
+        hit.getTarget().append("xyz");
+        assertThat(cache.get(key("<a/>")).getTarget().toString(), is("abc"));
+        assertThat(cache.getHits(), is(2L));
+        assertThat(cache.getMisses(), is(1L));
+    }
+
+    @Test
+    public void hitTakesNoTime() {
+        final CrosswalkCache<StringBuilder> cache = new CrosswalkCache<StringBuilder>(100000);
+        final CrosswalkResult<StringBuilder> original = result("abc").withNanos(Phase.CROSSWALK, 1000);
+        cache.put(key("<a/>"), original);
+        assertThat(original.isCached(), is(false));
+
+        final CrosswalkResult<StringBuilder> hit = cache.get(key("<a/>"));
+        assertThat(hit.isCached(), is(true));
+        for (final Phase phase : Phase.values())
+            assertThat(hit.getNanos(phase), is(0L));
+        assertThat(hit.withoutTarget().isCached(), is(true));
+    }
+
+    @Test
+    public void keyIncludesVersion() {
+        final CrosswalkCache<StringBuilder> cache = new CrosswalkCache<StringBuilder>(100000);
+        cache.put(key("<a/>"), result("abc"));
+        assertThat(cache.get(CrosswalkCache.key("<a/>".getBytes(), "v2")), nullValue());
+        assertThat(cache.get(CrosswalkCache.key("<a/>", "v1")), nullValue());
+        assertThat(cache.get(key("<b/>")), nullValue());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final CrosswalkCache<StringBuilder> probe = new CrosswalkCache<StringBuilder>(100000);
+        probe.put(key("probe"), result("abc"));
+        final CrosswalkCache<StringBuilder> cache = new CrosswalkCache<StringBuilder>(3 * probe.getBytes());
+        cache.put(key("1"), result("abc"));
+        cache.put(key("2"), result("abc"));
+        cache.put(key("3"), result("abc"));
+        cache.get(key("1"));
+        cache.put(key("4"), result("abc"));
+        assertThat(cache.getSize(), is(3));
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.get(key("2")), nullValue());
+        assertThat(cache.get(key("1")).getTarget().toString(), is("abc"));
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    public void tooLargeIsNotCached() {
+        final CrosswalkCache<StringBuilder> cache = new CrosswalkCache<StringBuilder>(300);
+        final char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        cache.put(key("<a/>"), result(new String(chars)));
+        assertThat(cache.getSize(), is(0));
+        assertThat(cache.getBytes(), is(0L));
+    }
+
+    @Test
+    public void cachesNotifications() {
+        final CrosswalkCache<StringBuilder> cache = new CrosswalkCache<StringBuilder>(100000);
+        final List<CrosswalkDiagnostic> errors = Collections.singletonList(new CrosswalkDiagnostic(Severity.ERROR, null, "wrong {}", "value"));
+        cache.put(key("<a/>"), new CrosswalkResult<StringBuilder>(new StringBuilder(), NONE, errors, NONE, 0, false, new long[3]));
+        final CrosswalkResult<StringBuilder> hit = cache.get(key("<a/>"));
+        assertThat(hit.getTarget(), nullValue());
+        assertThat(hit.getErrors().get(0).getMessage(), is("wrong value"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noSize() {
+        new CrosswalkCache<StringBuilder>(0);
+    }
+}
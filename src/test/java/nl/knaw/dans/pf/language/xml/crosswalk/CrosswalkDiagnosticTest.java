@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkDiagnostic.Severity;
+
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.LocatorImpl;
+
+public class CrosswalkDiagnosticTest {
+
+    @Test
+    public void format() {
+        assertThat(message("skipped {} at level:{}", "x:y", 3), is("skipped x:y at level:3"));
+        assertThat(message("{}{}", "a", null), is("anull"));
+        assertThat(message("too few {} {}", "args"), is("too few args {}"));
+        assertThat(message("too many {}", "a", "b"), is("too many a"));
+        assertThat(message("no {} arguments"), is("no {} arguments"));
+    }
+
+    @Test
+    public void positionIsCopied() {
+        final LocatorImpl locator = new LocatorImpl();
+        locator.setLineNumber(3);
+        locator.setColumnNumber(7);
+        final CrosswalkDiagnostic diagnostic = new CrosswalkDiagnostic(Severity.ERROR, locator, "{}", "abc");
+        locator.setLineNumber(4);
+        final SAXParseException exception = diagnostic.toException();
+        assertThat(exception.getLineNumber(), is(3));
+        assertThat(exception.getColumnNumber(), is(7));
+        assertThat(exception.getMessage(), is("abc"));
+        assertSame(exception, diagnostic.toException());
+    }
+
+    @Test
+    public void wrapsParserNotification() {
+        final SAXParseException exception = new SAXParseException("not valid", null, "file:x.xml", 2, 5);
+        final CrosswalkDiagnostic diagnostic = new CrosswalkDiagnostic(Severity.FATAL_ERROR, exception);
+        assertThat(diagnostic.getMessage(), is("not valid"));
+        assertThat(diagnostic.getSystemId(), is("file:x.xml"));
+        assertSame(exception, diagnostic.toException());
+        assertThat(diagnostic.toString(), is("FATAL_ERROR [2,5] not valid"));
+    }
+
+    private static String message(final String pattern, final Object... arguments) {
+        return new CrosswalkDiagnostic(Severity.WARNING, null, pattern, arguments).getMessage();
+    }
+}
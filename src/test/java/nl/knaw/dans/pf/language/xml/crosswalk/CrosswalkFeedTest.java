@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import nl.knaw.dans.pf.language.xml.validation.AbstractValidator2;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+public class CrosswalkFeedTest {
+    private static final String XSD = "file://" + new File("src/test/resources/input/abstract.xsd").getAbsolutePath();
+    // @formatter:off
+    private static final String XML = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<root xmlns:x='http://example.org'>\n" +
+            "  <simple xml:lang='en'>ab\u00e9</simple>\n" +
+            "  <x:complex>\n" +
+            "    abc\n" +
+            "    <skip>def</skip>\n" +
+            "    <use xml:lang='nl'><![CDATA[j<l]]></use>\n" +
+            "  </x:complex>\n" +
+            "</root>";
+    // @formatter:on
+
+    private static class SchemaValidator extends AbstractValidator2 implements SchemaProvider {
+        SchemaValidator() {
+            super(XSD);
+        }
+
+        @Override
+        public Schema getSchema() throws SAXException {
+            return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(XSD));
+        }
+    }
+
+    private static class CW extends Crosswalker<StringBuilder> {
+        CW() {
+            super(new CrosswalkHandlerMap<StringBuilder>() {
+                @Override
+                public CrosswalkHandler<StringBuilder> getHandler(String uri, String localName, Attributes attributes) throws SAXException {
+                    if ("simple".equals(localName) || "complex".equals(localName))
+                        return HANDLER;
+                    return null;
+                }
+
+                @Override
+                public boolean reportMissingHandler(String uri, String localName, Attributes attributes) {
+                    return false;
+                }
+            });
+        }
+
+        CrosswalkFeed<StringBuilder> feed(final AbstractValidator2 validator) throws CrosswalkException {
+            return feed(validator, new StringBuilder(), null);
+        }
+
+        CrosswalkResult<StringBuilder> crosswalk(final String xml) throws CrosswalkException {
+            return crosswalk(null, xml, new StringBuilder());
+        }
+    }
+
+    private static final CrosswalkHandler<StringBuilder> HANDLER = new CrosswalkHandler<StringBuilder>() {
+        @Override
+        protected void finishElement(final String uri, final String localName) throws SAXException {
+            getTarget().append("-" + uri + ":" + localName + "@" + getAttribute(XMLConstants.XML_NS_URI, "lang") + "=" + getTrimmedChars());
+        }
+    };
+
+    private final CW crosswalk = new CW();
+
+    @Test
+    public void chunksOfAnySize() throws Exception {
+        final String expected = crosswalk.crosswalk(XML).getTarget().toString();
+        final byte[] bytes = XML.getBytes("UTF-8");
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize *= 2) {
+            final CrosswalkFeed<StringBuilder> feed = crosswalk.feed(null);
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                assertThat(feed.getTarget().isDone(), is(false));
+                feed.feed(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+            }
+            assertThat("chunk size " + chunkSize, feed.getTarget().get().toString(), is(expected));
+        }
+    }
+
+    @Test
+    public void completesWhenRootCloses() throws Exception {
+        final CrosswalkFeed<StringBuilder> feed = crosswalk.feed(null);
+        final byte[] bytes = "<root><simple>abc</simple></root>  ".getBytes("UTF-8");
+        assertThat(feed.feed(bytes, 0, bytes.length), is(false));
+        assertThat(feed.getTarget().getNow(null).toString(), is("-:simple@null=abc"));
+    }
+
+    @Test
+    public void validates() throws Exception {
+        final CrosswalkFeed<StringBuilder> feed = crosswalk.feed(new SchemaValidator());
+        final byte[] bytes = "<noroot></noroot>".getBytes("UTF-8");
+        feed.feed(bytes, 0, bytes.length);
+        assertThat(feed.getTarget().get(), nullValue());
+        assertThat(feed.getResult().get().getErrors().size(), is(1));
+    }
+
+    @Test
+    public void failFast() throws Exception {
+        crosswalk.setMaxErrors(1);
+        final CrosswalkFeed<StringBuilder> feed = crosswalk.feed(new SchemaValidator());
+        final byte[] bytes = "<noroot><simple>abc</simple>".getBytes("UTF-8");
+        assertThat(feed.feed(bytes, 0, bytes.length), is(false));
+        assertThat(feed.getResult().get().isAborted(), is(true));
+        assertThat(feed.getTarget().get(), nullValue());
+    }
+
+    @Test
+    public void prematureEnd() throws Exception {
+        final CrosswalkFeed<StringBuilder> feed = crosswalk.feed(null);
+        final byte[] bytes = "<root><simple>abc</simple>".getBytes("UTF-8");
+        assertThat(feed.feed(bytes, 0, bytes.length), is(true));
+        feed.end();
+        assertFailed(feed);
+    }
+
+    @Test
+    public void notWellFormed() throws Exception {
+        final CrosswalkFeed<StringBuilder> feed = crosswalk.feed(null);
+        final byte[] bytes = "<root><simple>abc</root>".getBytes("UTF-8");
+        assertThat(feed.feed(bytes, 0, bytes.length), is(false));
+        assertFailed(feed);
+    }
+
+    @Test
+    public void exceedsLimit() throws Exception {
+        crosswalk.setLimits(CrosswalkLimits.NONE.withMaxTextLength(3));
+        final CrosswalkFeed<StringBuilder> feed = crosswalk.feed(new SchemaValidator());
+        final byte[] bytes = "<root><simple>abcd</simple></root>".getBytes("UTF-8");
+        assertThat(feed.feed(bytes, 0, bytes.length), is(false));
+        assertFailed(feed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validatorWithoutSchema() throws Exception {
+        crosswalk.feed(new AbstractValidator2(XSD) {});
+    }
+
+    private static void assertFailed(final CrosswalkFeed<StringBuilder> feed) throws InterruptedException {
+        try {
+            feed.getResult().get();
+            fail("expected a CrosswalkException");
+        }
+        catch (final ExecutionException e) {
+            assertThat(e.getCause() instanceof CrosswalkException, is(true));
+        }
+    }
+}
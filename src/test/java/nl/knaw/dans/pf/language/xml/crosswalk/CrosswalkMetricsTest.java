@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkMetrics.HandlerStats;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+public class CrosswalkMetricsTest {
+    private static final String XML = "<root><simple>abc</simple><simple>defg</simple><other>hi</other></root>";
+
+    private static class SimpleHandler extends CrosswalkHandler<StringBuilder> {
+        @Override
+        protected void finishElement(final String uri, final String localName) throws SAXException {
+            getTarget().append(getTrimmedChars());
+        }
+    }
+
+    private static class CW extends Crosswalker<StringBuilder> {
+        CW() {
+            super(new CrosswalkHandlerMap<StringBuilder>() {
+                private final CrosswalkHandler<StringBuilder> simple = new SimpleHandler();
+
+                @Override
+                public CrosswalkHandler<StringBuilder> getHandler(String uri, String localName, Attributes attributes) throws SAXException {
+                    return "simple".equals(localName) ? simple : null;
+                }
+
+                @Override
+                public boolean reportMissingHandler(String uri, String localName, Attributes attributes) {
+                    return false;
+                }
+            });
+        }
+
+        StringBuilder crosswalk(final String xml) throws CrosswalkException {
+            return crosswalk(null, xml, new StringBuilder()).getTarget();
+        }
+    }
+
+    private final CW crosswalk = new CW();
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        assertNull(crosswalk.getMetrics());
+        assertThat(crosswalk.crosswalk(XML).toString(), is("abcdefg"));
+    }
+
+    @Test
+    public void everyWalk() throws Exception {
+        final CrosswalkMetrics metrics = new CrosswalkMetrics();
+        crosswalk.setMetrics(metrics);
+        crosswalk.crosswalk(XML);
+        crosswalk.crosswalk(XML);
+
+        assertThat(metrics.getSampledWalks(), is(2L));
+        final Map<Class<?>, HandlerStats> stats = metrics.getHandlerStats();
+        assertThat(stats.size(), is(1));
+        final HandlerStats simple = stats.get(SimpleHandler.class);
+        assertThat(simple.getInvocations(), is(4L));
+        assertThat(simple.getChars(), is(14L));
+        assertTrue(simple.getControlNanos() >= simple.getFinishNanos());
+
+        metrics.reset();
+        assertThat(metrics.getSampledWalks(), is(0L));
+        assertTrue(metrics.getHandlerStats().isEmpty());
+    }
+
+    @Test
+    public void sampled() throws Exception {
+        final CrosswalkMetrics metrics = new CrosswalkMetrics(1000000);
+        crosswalk.setMetrics(metrics);
+        for (int i = 0; i < 10; i++)
+            assertThat(crosswalk.crosswalk(XML).toString(), is("abcdefg"));
+        // the chance that all of these walks are sampled is negligible
+        assertTrue(metrics.getSampledWalks() < 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidInterval() throws Exception {
+        new CrosswalkMetrics(0);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+
+public class CrosswalkTaskTest {
+    private static final CrosswalkResult<String> RESULT = new CrosswalkResult<String>("target", Collections.<CrosswalkDiagnostic> emptyList(),
+            Collections.<CrosswalkDiagnostic> emptyList(), Collections.<CrosswalkDiagnostic> emptyList(), 0, false, new long[3]);
+
+    @Test
+    public void completes() throws Exception {
+        final CrosswalkTask<String> task = new CrosswalkTask<String>(new Callable<CrosswalkResult<String>>() {
+            @Override
+            public CrosswalkResult<String> call() {
+                return RESULT;
+            }
+        });
+        CrosswalkTask.defaultExecutor().execute(task);
+        assertThat(task.get(10, TimeUnit.SECONDS).getTarget(), is("target"));
+    }
+
+    @Test
+    public void fails() throws Exception {
+        final CrosswalkTask<String> task = new CrosswalkTask<String>(new Callable<CrosswalkResult<String>>() {
+            @Override
+            public CrosswalkResult<String> call() throws CrosswalkException {
+                throw new CrosswalkException("broken", null);
+            }
+        });
+        task.run();
+        try {
+            task.get();
+            fail("expected an ExecutionException");
+        }
+        catch (final ExecutionException e) {
+            assertThat(e.getCause() instanceof CrosswalkException, is(true));
+        }
+    }
+
+    @Test
+    public void cancelledBeforeStart() throws Exception {
+        final AtomicBoolean called = new AtomicBoolean();
+        final CrosswalkTask<String> task = new CrosswalkTask<String>(new Callable<CrosswalkResult<String>>() {
+            @Override
+            public CrosswalkResult<String> call() {
+                called.set(true);
+                return RESULT;
+            }
+        });
+        assertThat(task.cancel(true), is(true));
+        task.run();
+        assertThat(called.get(), is(false));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelInterruptsRunningWalk() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final CrosswalkTask<String> task = new CrosswalkTask<String>(new Callable<CrosswalkResult<String>>() {
+            @Override
+            public CrosswalkResult<String> call() throws InterruptedException {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                }
+                catch (final InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return RESULT;
+            }
+        });
+        final AtomicBoolean interruptLeft = new AtomicBoolean(true);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                interruptLeft.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        thread.start();
+        started.await();
+        task.cancel(true);
+        assertThat(interrupted.await(10, TimeUnit.SECONDS), is(true));
+        thread.join();
+        assertThat("a next task of the thread is not interrupted", interruptLeft.get(), is(false));
+        task.get();
+    }
+
+    @Test
+    public void executor() throws Exception {
+        final Executor sameThread = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        };
+        final CW crosswalk = new CW();
+        assertThat(crosswalk.async("<root/>", sameThread).get().getTarget().toString(), is("root"));
+    }
+
+    private static class CW extends Crosswalker<StringBuilder> {
+        CW() {
+            super(new CrosswalkHandlerMap<StringBuilder>() {
+                @Override
+                public CrosswalkHandler<StringBuilder> getHandler(final String uri, final String localName, final Attributes attributes) {
+                    return null;
+                }
+
+                @Override
+                public boolean reportMissingHandler(final String uri, final String localName, final Attributes attributes) {
+                    return false;
+                }
+            });
+        }
+
+        CompletableFuture<CrosswalkResult<StringBuilder>> async(final String xml, final Executor executor) {
+            return async(new Callable<CrosswalkResult<StringBuilder>>() {
+                @Override
+                public CrosswalkResult<StringBuilder> call() throws CrosswalkException {
+                    return crosswalk(null, xml, new StringBuilder("root"));
+                }
+            }, executor);
+        }
+    }
+}
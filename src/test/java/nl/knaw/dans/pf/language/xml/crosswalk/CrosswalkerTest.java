@@ -19,21 +19,52 @@ import static org.hamcrest.core.Is.*;
 import static org.hamcrest.core.IsNull.*;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
+import nl.knaw.dans.pf.language.xml.crosswalk.CrosswalkResult.Phase;
+import nl.knaw.dans.pf.language.xml.crosswalk.Crosswalker.ValidationMode;
 import nl.knaw.dans.pf.language.xml.validation.AbstractValidator2;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 public class CrosswalkerTest {
     private static final String XSD = "file://" + new File("src/test/resources/input/abstract.xsd").getAbsolutePath();
     private static final AbstractValidator2 VALIDATOR = new AbstractValidator2(XSD) {};
+    private static final AbstractValidator2 SCHEMA_VALIDATOR = new SchemaValidator();
     private final CW crosswalk = new CW(VALIDATOR);
+    private final SinglePassCW singlePassCrosswalk = new SinglePassCW();
+
+    private static class SchemaValidator extends AbstractValidator2 implements SchemaProvider {
+        SchemaValidator() {
+            super(XSD);
+        }
+
+        @Override
+        public Schema getSchema() throws SAXException {
+            return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(XSD));
+        }
+    }
 
     private static CrosswalkHandler<StringBuffer> createSimpleHandler() {
         return new CrosswalkHandler<StringBuffer>() {
@@ -62,6 +93,34 @@ public class CrosswalkerTest {
         };
     }
 
+    private static CrosswalkHandler<StringBuffer> createSkippingHandler() {
+        return new CrosswalkHandler<StringBuffer>() {
+            @Override
+            protected boolean skipsSubtree() {
+                return true;
+            }
+
+            @Override
+            public void chars(final char[] ch, final int start, final int length) throws SAXException {
+                getTarget().append("-chars");
+            }
+
+            @Override
+            protected void finishElement(final String uri, final String localName) throws SAXException {
+                getTarget().append("-" + localName + "-" + getCharsSinceStart());
+            }
+        };
+    }
+
+    private static CrosswalkHandler<StringBuffer> createFailingHandler() {
+        return new CrosswalkHandler<StringBuffer>() {
+            @Override
+            protected void finishElement(final String uri, final String localName) throws SAXException {
+                throw new IllegalStateException("a bug in a handler");
+            }
+        };
+    }
+
     private static CrosswalkHandlerMap<StringBuffer> createHandlerMap() {
         return new CrosswalkHandlerMap<StringBuffer>() {
             @Override
@@ -70,6 +129,10 @@ public class CrosswalkerTest {
                     return createSimpleHandler();
                 else if ("complex".equals(localName))
                     return createComplexHandler();
+                else if ("skipped".equals(localName))
+                    return createSkippingHandler();
+                else if ("failing".equals(localName))
+                    return createFailingHandler();
                 return null;
             }
 
@@ -92,6 +155,51 @@ public class CrosswalkerTest {
         public StringBuffer createFrom(final String xml) throws CrosswalkException {
             return walk(VALIDATOR, xml, new StringBuffer());
         }
+
+        public StringBuffer createFrom(final CrosswalkSource source) throws CrosswalkException {
+            return walk(VALIDATOR, source, new StringBuffer());
+        }
+
+        public CrosswalkResult<StringBuffer> resultFrom(final String xml) throws CrosswalkException {
+            return crosswalk(VALIDATOR, xml, new StringBuffer());
+        }
+
+        public CrosswalkResult<StringBuffer> resultFrom(final String xml, final ValidationMode mode) throws CrosswalkException {
+            return crosswalk(SCHEMA_VALIDATOR, CrosswalkSource.of(xml), new StringBuffer(), mode);
+        }
+    }
+
+    private static class ClosingStream extends ByteArrayInputStream {
+        boolean closed;
+
+        ClosingStream(final String xml) throws UnsupportedEncodingException {
+            super(xml.getBytes("UTF-8"));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private class SinglePassCW extends Crosswalker<StringBuffer> {
+        public SinglePassCW() {
+            super(createHandlerMap());
+            setValidationMode(ValidationMode.SINGLE_PASS);
+        }
+
+        public StringBuffer createFrom(final File file) throws CrosswalkException {
+            return walk(SCHEMA_VALIDATOR, file, new StringBuffer());
+        }
+
+        public StringBuffer createFrom(final String xml) throws CrosswalkException {
+            return walk(SCHEMA_VALIDATOR, xml, new StringBuffer());
+        }
+
+        public StringBuffer createFrom(final CrosswalkSource source) throws CrosswalkException {
+            return walk(SCHEMA_VALIDATOR, source, new StringBuffer());
+        }
     }
 
     @Test(expected = NullPointerException.class)
@@ -140,6 +248,14 @@ public class CrosswalkerTest {
         assertThat(crosswalk.getXmlErrorHandler().getWarnings().size(), is(2));
     }
 
+    @Test
+    public void skippedSubtree() throws Exception {
+        final String s = "<root><skipped>abc<simple>def</simple><skipped><complex/></skipped>ghi</skipped><simple>jkl</simple></root>";
+        assertThat(crosswalk.createFrom(s).toString(), is("-skipped--null-jkl"));
+        assertThat(singlePassCrosswalk.createFrom(s).toString(), is("-skipped--null-jkl"));
+        assertThat(crosswalk.getXmlErrorHandler().getNotificationCount(), is(0));
+    }
+
     @Test
     public void errors() throws Exception {
         StringBuffer result = crosswalk.createFrom("<?xml version='1.0' encoding='UTF-8'?><root><simple>xyz</simple></root>");
@@ -148,8 +264,373 @@ public class CrosswalkerTest {
         assertThat(result, nullValue());
     }
 
+    @Test
+    public void singlePassInvalidXml() throws Exception {
+        StringBuffer result = singlePassCrosswalk.createFrom("<noroot></noroot>");
+        assertThat(result, nullValue());
+        assertThat(singlePassCrosswalk.getXmlErrorHandler().getErrors().size(), is(1));
+    }
+
+    @Test
+    public void singlePassComplex() throws Exception {
+        // @formatter:off
+        String s = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+                "<root>\n" +
+                "  <simple xml:lang='en'>abc</simple>\n" +
+                "  <complex>\n" +
+                "    abc\n" +
+                "    <skip>def</skip>\n" +
+                "    ghi\n" +
+                "    <use xml:lang='nl'>jkl</use>\n" +
+                "  </complex>\n" +
+                "</root>";
+        // @formatter:on
+        StringBuffer result = singlePassCrosswalk.createFrom(s);
+        assertThat(result.toString(), is("-en-abc-nl-jkl"));
+        assertThat(singlePassCrosswalk.getXmlErrorHandler().getWarnings().size(), is(2));
+    }
+
+    @Test
+    public void singlePassFile() throws Exception {
+        StringBuffer result = singlePassCrosswalk.createFrom(new File("src/test/resources/input/abstract.xsd"));
+        // an XSD is well formed XML but not a valid root element
+        assertThat(result, nullValue());
+    }
+
+    @Test
+    public void nonAsciiStringTwoPasses() throws Exception {
+        // the validator reads the characters as well, so the declared encoding does not matter
+        StringBuffer result = crosswalk.createFrom("<?xml version='1.0' encoding='UTF-16'?><root><simple>\u00e9\u20ac</simple></root>");
+        assertThat(crosswalk.getXmlErrorHandler().getNotificationCount(), is(0));
+        assertThat(result.toString(), is("-null-\u00e9\u20ac"));
+    }
+
+    @Test
+    public void nonAsciiString() throws Exception {
+        StringBuffer result = singlePassCrosswalk.createFrom("<?xml version='1.0' encoding='ISO-8859-1'?><root><simple>\u00e9\u20ac</simple></root>");
+        assertThat(result.toString(), is("-null-\u00e9\u20ac"));
+    }
+
+    @Test
+    public void readerReusedAcrossTasks() throws Exception {
+        final ExecutorService executor = CrosswalkTask.defaultExecutor();
+        final XMLReader released = executor.submit(new Callable<XMLReader>() {
+            @Override
+            public XMLReader call() throws Exception {
+                final XMLReader reader = Crosswalker.acquireReader();
+                Crosswalker.releaseReader(reader);
+                return reader;
+            }
+        }).get();
+        final XMLReader reader = executor.submit(new Callable<XMLReader>() {
+            @Override
+            public XMLReader call() throws Exception {
+                return Crosswalker.acquireReader();
+            }
+        }).get();
+        assertSame(released, reader);
+        Crosswalker.releaseReader(reader);
+    }
+
+    @Test
+    public void inputStreamClosed() throws Exception {
+        ClosingStream stream = new ClosingStream("<root><simple>abc</simple></root>");
+        StringBuffer result = crosswalk.createFrom(CrosswalkSource.of(stream));
+        assertThat(result.toString(), is("-null-abc"));
+        assertThat(stream.closed, is(true));
+    }
+
+    @Test
+    public void singlePassInputStreamClosed() throws Exception {
+        ClosingStream stream = new ClosingStream("<root><simple>abc</simple></root>");
+        StringBuffer result = singlePassCrosswalk.createFrom(CrosswalkSource.of(stream));
+        assertThat(result.toString(), is("-null-abc"));
+        assertThat(stream.closed, is(true));
+    }
+
+    @Test
+    public void inputStreamClosedOnParseError() throws Exception {
+        ClosingStream stream = new ClosingStream("<root><simple>abc</root>");
+        try {
+            singlePassCrosswalk.createFrom(CrosswalkSource.of(stream));
+            fail("expected a CrosswalkException");
+        }
+        catch (final CrosswalkException e) {
+            assertThat(stream.closed, is(true));
+        }
+    }
+
+    @Test
+    public void channel() throws Exception {
+        ReadableByteChannel channel = Channels.newChannel(new ClosingStream("<root><simple>abc</simple></root>"));
+        StringBuffer result = crosswalk.createFrom(CrosswalkSource.of(channel));
+        assertThat(result.toString(), is("-null-abc"));
+        assertThat(channel.isOpen(), is(false));
+    }
+
+    @Test
+    public void memoryMappedPath() throws Exception {
+        File file = new File("target/test-crosswalk/mapped.xml");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "<root><simple>abc</simple></root>".getBytes("UTF-8"));
+        crosswalk.setMemoryMapThreshold(0);
+        assertThat(crosswalk.createFrom(file).toString(), is("-null-abc"));
+        assertThat(crosswalk.createFrom(CrosswalkSource.of(file.toPath(), 0)).toString(), is("-null-abc"));
+        assertThat(singlePassCrosswalk.createFrom(CrosswalkSource.of(file.toPath(), 0)).toString(), is("-null-abc"));
+    }
+
+    @Test
+    public void verdictPerWalk() throws Exception {
+        assertThat(crosswalk.createFrom("<?xml version='1.0' encoding='UTF-8'?><root><simple>xyz</simple></root>"), nullValue());
+        // without a reset of the shared handler
+        assertThat(crosswalk.createFrom("<root><simple>abc</simple></root>").toString(), is("-null-abc"));
+    }
+
+    @Test
+    public void boundedNotifications() throws Exception {
+        final StringBuilder sb = new StringBuilder("<root><complex>");
+        for (int i = 0; i < 10; i++)
+            sb.append("<skip>").append(i).append("</skip>");
+        sb.append("</complex></root>");
+        // ten skipped children and the skipped complex element itself
+        crosswalk.setMaxNotifications(3);
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom(sb.toString());
+        assertThat(result.getWarnings().size(), is(3));
+        assertThat(result.getDroppedNotificationCount(), is(8));
+        assertThat(result.getNotificationCount(), is(11));
+        assertThat(result.passed(), is(true));
+        assertThat(result.getMessages().endsWith("and 8 more\n"), is(true));
+    }
+
+    @Test
+    public void boundedSharedHandler() throws Exception {
+        crosswalk.setMaxNotifications(3);
+        for (int i = 0; i < 5; i++)
+            assertThat(crosswalk.createFrom("<root><complex>abc<skip>" + i + "</skip><use xml:lang='nl'>jkl</use></complex></root>").toString(), is("-nl-jkl"));
+        // two warnings per walk, the latest are kept
+        assertThat(crosswalk.getXmlErrorHandler().getWarnings().size(), is(3));
+        assertThat(crosswalk.getXmlErrorHandler().getWarnings().get(1).getMessage(), is("skipping skip 4"));
+        assertThat(crosswalk.getXmlErrorHandler().getNotificationCount(), is(10));
+        assertThat(crosswalk.getXmlErrorHandler().passed(), is(true));
+    }
+
+    @Test
+    public void sharedHandlerConcurrentWalks() throws Exception {
+        final String xml = "<root><complex>abc<skip>def</skip><use xml:lang='nl'>jkl</use></complex></root>";
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 4; t++) {
+                final boolean resetting = t == 0;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 200; i++) {
+                            assertThat(crosswalk.createFrom(xml).toString(), is("-nl-jkl"));
+                            if (resetting)
+                                crosswalk.getXmlErrorHandler().reset();
+                            else
+                                // reads while other walks add and reset
+                                crosswalk.getXmlErrorHandler().getMessages();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertThat(crosswalk.getXmlErrorHandler().getWarnings().size() <= Crosswalker.DEFAULT_MAX_NOTIFICATIONS, is(true));
+    }
+
+    @Test
+    public void failFast() throws Exception {
+        crosswalk.setMaxErrors(1);
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<root><simple>xyz</simple><simple>xyz</simple></root>");
+        assertThat(result.isAborted(), is(true));
+        assertThat(result.getErrors().size(), is(1));
+        assertThat(result.getFatalErrors().size(), is(0));
+        assertThat(result.getTarget(), nullValue());
+    }
+
+    @Test
+    public void errorBudget() throws Exception {
+        crosswalk.setMaxErrors(3);
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<root><simple>xyz</simple><simple>xyz</simple><simple>xyz</simple></root>");
+        assertThat(result.isAborted(), is(true));
+        assertThat(result.getErrors().size(), is(2));
+        assertThat(result.getFatalErrors().size(), is(1));
+    }
+
+    @Test
+    public void collectAllErrors() throws Exception {
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<root><simple>xyz</simple><simple>xyz</simple></root>");
+        assertThat(result.isAborted(), is(false));
+        assertThat(result.getErrors().size(), is(2));
+        assertThat(result.getFatalErrors().size(), is(2));
+    }
+
+    @Test
+    public void abortedValidationSkipsCrosswalk() throws Exception {
+        crosswalk.setMaxErrors(1);
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<noroot><simple>xyz</simple></noroot>");
+        assertThat(result.isAborted(), is(true));
+        assertThat(result.getNotificationCount(), is(1));
+    }
+
+    @Test
+    public void singlePassFailFast() throws Exception {
+        singlePassCrosswalk.setMaxErrors(1);
+        assertThat(singlePassCrosswalk.createFrom("<noroot><simple>xyz</simple></noroot>"), nullValue());
+        assertThat(singlePassCrosswalk.getXmlErrorHandler().getNotificationCount(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noErrorBudget() throws Exception {
+        crosswalk.setMaxErrors(0);
+    }
+
+    @Test(expected = CrosswalkException.class)
+    public void interrupted() throws Exception {
+        Thread.currentThread().interrupt();
+        try {
+            crosswalk.resultFrom("<root><simple>abc</simple></root>");
+        }
+        finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void validationModePerCall() throws Exception {
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<noroot><simple>abc</simple></noroot>", ValidationMode.SINGLE_PASS);
+        assertThat(result.getErrors().size(), is(1));
+        assertThat(result.getNanos(Phase.VALIDATION), is(0L));
+        assertThat(crosswalk.getValidationMode(), is(ValidationMode.TWO_PASS));
+        assertThat(result.withoutTarget().getErrors().size(), is(1));
+    }
+
+    @Test
+    public void externalDtdNotLoaded() throws Exception {
+        final String xml = "<!DOCTYPE root SYSTEM 'file:///nonexistent/root.dtd'><root><simple>abc</simple></root>";
+        for (final ValidationMode mode : ValidationMode.values())
+            assertThat(crosswalk.resultFrom(xml, mode).getTarget().toString(), is("-null-abc"));
+    }
+
+    @Test
+    public void withinLimits() throws Exception {
+        crosswalk.setLimits(CrosswalkLimits.NONE.withMaxTextLength(3).withMaxDepth(2).withMaxElements(3).withMaxAttributes(1).withMaxChars(6));
+        final String xml = "<root><simple xml:lang='en'>abc</simple><simple>def</simple></root>";
+        assertThat(crosswalk.resultFrom(xml, ValidationMode.TWO_PASS).getTarget().toString(), is("-en-abc-null-def"));
+        assertThat(crosswalk.resultFrom(xml, ValidationMode.SINGLE_PASS).getTarget().toString(), is("-en-abc-null-def"));
+    }
+
+    @Test
+    public void exceedsLimits() throws Exception {
+        assertExceeds(CrosswalkLimits.NONE.withMaxTextLength(3), "<root><simple>abcd</simple></root>", "text length");
+        assertExceeds(CrosswalkLimits.NONE.withMaxDepth(2), "<root><complex><use/></complex></root>", "element depth at use");
+        assertExceeds(CrosswalkLimits.NONE.withMaxElements(2), "<root><simple/><simple/></root>", "number of elements");
+        assertExceeds(CrosswalkLimits.NONE.withMaxAttributes(1), "<root a='1'><simple b='2'/></root>", "number of attributes");
+        assertExceeds(CrosswalkLimits.NONE.withMaxChars(5), "<root><simple>abc</simple><simple>def</simple></root>", "number of characters");
+    }
+
+    private void assertExceeds(final CrosswalkLimits limits, final String xml, final String what) throws Exception {
+        crosswalk.setLimits(limits);
+        for (final ValidationMode mode : ValidationMode.values()) {
+            try {
+                crosswalk.resultFrom(xml, mode);
+                fail("expected a CrosswalkException for " + limits + " " + mode);
+            }
+            catch (final CrosswalkException e) {
+                assertThat(e.getMessage(), e.getMessage().contains(what), is(true));
+                // the validation pass stops as well
+                assertThat(e.getMessage(), e.getMessage().startsWith("could not validate"), is(mode != ValidationMode.SINGLE_PASS));
+            }
+        }
+        // a validator that is not a SchemaProvider only has a guarded crosswalk
+        try {
+            crosswalk.createFrom(xml);
+            fail("expected a CrosswalkException for " + limits);
+        }
+        catch (final CrosswalkException e) {
+            assertThat(e.getMessage(), e.getMessage().startsWith("could not parse"), is(true));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noLimits() throws Exception {
+        crosswalk.setLimits(null);
+    }
+
+    @Test
+    public void pipelined() throws Exception {
+        final String xml = "<root><simple xml:lang='en'>abc</simple><complex><skip>def</skip><use>ghi</use></complex></root>";
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom(xml, ValidationMode.PIPELINED);
+        assertThat(result.getTarget().toString(), is(crosswalk.resultFrom(xml, ValidationMode.TWO_PASS).getTarget().toString()));
+        assertThat(result.getWarnings().size(), is(2));
+        assertThat(result.getNanos(Phase.VALIDATION) > 0, is(true));
+        assertThat(result.getNanos(Phase.CROSSWALK) > 0, is(true));
+    }
+
+    @Test
+    public void pipelinedInvalid() throws Exception {
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<noroot><simple>xyz</simple></noroot>", ValidationMode.PIPELINED);
+        assertThat(result.getTarget(), nullValue());
+        // the validation error first, then those of the crosswalk
+        assertThat(result.getErrors().size(), is(2));
+        assertThat(result.getErrors().get(1).getMessage(), is("no xyz allowed"));
+        assertThat(result.getFatalErrors().size(), is(1));
+    }
+
+    @Test
+    public void pipelinedFailFast() throws Exception {
+        crosswalk.setMaxErrors(1);
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<noroot><simple>xyz</simple></noroot>", ValidationMode.PIPELINED);
+        assertThat(result.isAborted(), is(true));
+        assertThat(result.getNotificationCount(), is(1));
+    }
+
+    @Test
+    public void pipelinedWithoutSchemaProvider() throws Exception {
+        crosswalk.setValidationMode(ValidationMode.PIPELINED);
+        assertThat(crosswalk.createFrom("<root><simple>abc</simple></root>").toString(), is("-null-abc"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void pipelinedHandlerBug() throws Exception {
+        final StringBuilder sb = new StringBuilder("<root><failing/>");
+        for (int i = 0; i < 10000; i++)
+            sb.append("<simple>abc</simple>");
+        crosswalk.resultFrom(sb.append("</root>").toString(), ValidationMode.PIPELINED);
+    }
+
+    @Test
+    public void pipelinedNotWellFormed() throws Exception {
+        try {
+            crosswalk.resultFrom("<root><simple>abc</root>", ValidationMode.PIPELINED);
+            fail("expected a CrosswalkException");
+        }
+        catch (final CrosswalkException e) {
+            assertThat(e.getMessage(), e.getMessage().startsWith("could not validate"), is(true));
+        }
+    }
+
+    @Test
+    public void phaseTimings() throws Exception {
+        final CrosswalkResult<StringBuffer> result = crosswalk.resultFrom("<root><simple>abc</simple></root>");
+        assertThat(result.getNanos(Phase.VALIDATION) > 0, is(true));
+        assertThat(result.getNanos(Phase.CROSSWALK) > 0, is(true));
+        assertThat(result.getNanos(Phase.CHECK), is(0L));
+        assertThat(result.withNanos(Phase.CHECK, 5).getNanos(Phase.CHECK), is(5L));
+        assertThat(result.withNanos(Phase.CHECK, 5).getTarget(), is(result.getTarget()));
+    }
+
     @Before
     public void resetErrorHandler() {
         crosswalk.getXmlErrorHandler().reset();
+        singlePassCrosswalk.getXmlErrorHandler().reset();
     }
 }
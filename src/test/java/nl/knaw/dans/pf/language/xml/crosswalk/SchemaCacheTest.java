@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class SchemaCacheTest {
+    private static final String XSD = "file://" + new File("src/test/resources/input/abstract.xsd").getAbsolutePath();
+
+    @Test
+    public void compiledOnce() throws Exception {
+        SchemaCache.compile(new String[] {XSD});
+        assertSame(SchemaCache.getSchema(XSD), SchemaCache.getSchema(XSD));
+    }
+
+    @Test
+    public void concurrentFirstCalls() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Callable<Schema> call = new Callable<Schema>() {
+                @Override
+                public Schema call() throws SAXException {
+                    return SchemaCache.getSchema(XSD);
+                }
+            };
+            final Schema first = executor.submit(call).get();
+            assertSame(first, executor.submit(call).get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = SAXException.class)
+    public void failureIsNotCached() throws Exception {
+        final String xsd = "file://" + new File("doesNot.Exist").getAbsolutePath();
+        try {
+            SchemaCache.getSchema(xsd);
+        }
+        catch (final SAXException e) {
+            // tries again
+            SchemaCache.getSchema(xsd);
+        }
+    }
+
+    @Test
+    public void validatorPooled() throws Exception {
+        final Schema schema = SchemaCache.getSchema(XSD);
+        final Validator validator = SchemaCache.acquireValidator(schema);
+        assertNotSame(validator, SchemaCache.acquireValidator(schema));
+        SchemaCache.releaseValidator(schema, validator);
+        assertSame(validator, SchemaCache.acquireValidator(schema));
+    }
+
+    @Test
+    public void validatorReusedAcrossTasks() throws Exception {
+        final Schema schema = SchemaCache.getSchema(XSD);
+        final ExecutorService executor = CrosswalkTask.defaultExecutor();
+        final Validator released = executor.submit(new Callable<Validator>() {
+            @Override
+            public Validator call() throws Exception {
+                final Validator validator = SchemaCache.acquireValidator(schema);
+                SchemaCache.releaseValidator(schema, validator);
+                return validator;
+            }
+        }).get();
+        assertSame(released, executor.submit(new Callable<Validator>() {
+            @Override
+            public Validator call() throws Exception {
+                return SchemaCache.acquireValidator(schema);
+            }
+        }).get());
+    }
+
+    @Test
+    public void digest() throws Exception {
+        final String digest = SchemaCache.getDigest(SchemaCache.getSchema(XSD));
+        assertEquals(64, digest.length());
+        assertEquals(digest, SchemaCache.getDigest(SchemaCache.getSchema(XSD)));
+        assertNull(SchemaCache.getDigest(SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(XSD))));
+    }
+
+    @Test
+    public void uncachedSchema() throws Exception {
+        final Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(XSD));
+        final Validator validator = SchemaCache.acquireValidator(schema);
+        SchemaCache.releaseValidator(schema, validator);
+        assertNotSame(validator, SchemaCache.acquireValidator(schema));
+    }
+}
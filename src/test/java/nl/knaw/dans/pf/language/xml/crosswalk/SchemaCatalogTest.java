@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SchemaCatalogTest {
+    private static final File OVERRIDE_DIR = new File("target/test-schema-catalog");
+    private static final String LOCATION = "http://example.org/schemas/abstract.xsd";
+
+    @Before
+    public void createOverrideDir() throws Exception {
+        FileUtils.copyFile(new File("src/test/resources/input/abstract.xsd"), new File(OVERRIDE_DIR, "example.org/schemas/abstract.xsd"));
+        SchemaCatalog.setOverrideDir(OVERRIDE_DIR);
+    }
+
+    @After
+    public void resetOverrideDir() {
+        SchemaCatalog.setOverrideDir(null);
+    }
+
+    @Test
+    public void localCopy() throws Exception {
+        assertThat(SchemaCatalog.locate(LOCATION), is(new File(OVERRIDE_DIR, "example.org/schemas/abstract.xsd").toURI().toString()));
+    }
+
+    @Test
+    public void noLocalCopy() throws Exception {
+        assertThat(SchemaCatalog.locate("http://example.org/schemas/other.xsd"), is("http://example.org/schemas/other.xsd"));
+        assertThat(SchemaCatalog.locate("file:///tmp/abstract.xsd"), is("file:///tmp/abstract.xsd"));
+        assertThat(SchemaCatalog.locate("abstract.xsd"), is("abstract.xsd"));
+    }
+
+    @Test
+    public void compileOffline() throws Exception {
+        // the online location does not exist
+        assertNotNull(SchemaCache.getSchema(LOCATION));
+    }
+
+    @Test
+    public void systemIdRemainsOnline() throws Exception {
+        assertThat(SchemaCatalog.newSource(LOCATION).getSystemId(), is(LOCATION));
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TrimmedTextTest {
+
+    @Test
+    public void trimsLikeString() throws Exception {
+        final StringBuilder buffer = new StringBuilder();
+        final TrimmedText text = new TrimmedText(buffer);
+        for (final String s : new String[] {"", " ", "\n\t x y \r\n", "xy", " x", "x "}) {
+            buffer.setLength(0);
+            buffer.append(s);
+            assertThat(text.trim().toString(), is(s.trim()));
+            assertThat(text.length(), is(s.trim().length()));
+        }
+    }
+
+    @Test
+    public void view() throws Exception {
+        final StringBuilder buffer = new StringBuilder("  abc ");
+        final TrimmedText text = new TrimmedText(buffer).trim();
+        assertThat(text.charAt(0), is('a'));
+        assertThat(text.subSequence(1, 3).toString(), is("bc"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfView() throws Exception {
+        new TrimmedText(new StringBuilder("  abc ")).trim().charAt(3);
+    }
+}
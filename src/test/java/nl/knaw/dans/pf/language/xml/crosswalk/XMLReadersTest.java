@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.crosswalk;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.StringReader;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Validator;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class XMLReadersTest {
+    private static final String XSD = "file://" + new File("src/test/resources/input/abstract.xsd").getAbsolutePath();
+    private static final String MISSING = "file://" + new File("src/test/resources/input/missing").getAbsolutePath();
+
+    private static class TextHandler extends DefaultHandler {
+        final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void skippedEntity(final String name) {
+            text.append("[" + name + "]");
+        }
+    }
+
+    private static String parse(final String xml) throws Exception {
+        final XMLReader reader = XMLReaders.newReader();
+        final TextHandler handler = new TextHandler();
+        reader.setContentHandler(handler);
+        reader.parse(new InputSource(new StringReader(xml)));
+        return handler.text.toString();
+    }
+
+    @Test
+    public void externalDtdNotLoaded() throws Exception {
+        assertThat(parse("<!DOCTYPE root SYSTEM '" + MISSING + ".dtd'><root>abc</root>"), is("abc"));
+    }
+
+    @Test
+    public void externalEntitySkipped() throws Exception {
+        assertThat(parse("<!DOCTYPE root [<!ENTITY ext SYSTEM '" + XSD + "'>]><root>&ext;</root>"), is("[ext]"));
+    }
+
+    @Test
+    public void internalEntityExpanded() throws Exception {
+        assertThat(parse("<!DOCTYPE root [<!ENTITY a 'abc'>]><root>&a;&amp;&#65;</root>"), is("abc&A"));
+    }
+
+    @Test(expected = SAXParseException.class)
+    public void entityBomb() throws Exception {
+        final StringBuilder sb = new StringBuilder("<!DOCTYPE root [<!ENTITY a 'x'>");
+        for (char c = 'b'; c <= 'e'; c++) {
+            sb.append("<!ENTITY ").append(c).append(" '");
+            for (int i = 0; i < 10; i++)
+                sb.append('&').append((char) (c - 1)).append(';');
+            sb.append("'>");
+        }
+        // 11110 expansions
+        parse(sb.append("]><root>&e;</root>").toString());
+    }
+
+    @Test
+    public void validatorRefusesExternalDtd() throws Exception {
+        final Validator validator = XMLReaders.harden(SchemaCache.getSchema(XSD).newValidator());
+        try {
+            validator.validate(new StreamSource(new StringReader("<!DOCTYPE root SYSTEM '" + MISSING + ".dtd'><root/>")));
+            fail("expected a refused DTD");
+        }
+        catch (final SAXException e) {
+            assertThat(e.getMessage(), e.getMessage().contains("accessExternalDTD"), is(true));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.pf.language.xml.vocabulary;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.junit.Test;
+
+public class MapFromXSDTest {
+    private static final String XSD = "file://" + new File("src/test/resources/input/vocabulary.xsd").getAbsolutePath();
+    private static final String NARCIS_XSD = "http://easy.dans.knaw.nl/schemas/vocab/2015/narcis-type.xsd";
+
+    @Test
+    public void parsed() throws Exception {
+        final MapFromXSD maps = MapFromXSD.load(XSD);
+        assertThat(maps.getEnum2appInfo().get("R"), is("colour:1"));
+        assertThat(maps.getAppInfo2doc().get("colour:1"), is("Red"));
+        assertThat(maps.getEnum2doc().get("R"), is("Red"));
+    }
+
+    @Test
+    public void precomputed() throws Exception {
+        final MapFromXSD parsed = new MapFromXSD(XSD);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parsed.store(outputStream, XSD);
+        final MapFromXSD read = MapFromXSD.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertThat(read.getEnum2appInfo(), is(parsed.getEnum2appInfo()));
+        assertThat(read.getAppInfo2doc(), is(parsed.getAppInfo2doc()));
+        assertThat(read.getEnum2doc(), is(parsed.getEnum2doc()));
+        assertThat(read.getEnum2doc().size(), is(3));
+        assertThat(read.getEnum2appInfo().get("B"), is("colour:3\tblue"));
+        assertThat(read.getEnum2doc().get("B"), is("Blue\t=\n#00f"));
+    }
+
+    @Test
+    public void precomputedNarcis() throws Exception {
+        // the resource is generated from the bundled copy of the XSD by the build
+        final MapFromXSD precomputed = MapFromXSD.load(NARCIS_XSD);
+        final MapFromXSD parsed = new MapFromXSD(NARCIS_XSD);
+        assertThat(precomputed.getEnum2appInfo(), is(parsed.getEnum2appInfo()));
+        assertThat(precomputed.getAppInfo2doc(), is(parsed.getAppInfo2doc()));
+        assertThat(precomputed.getEnum2doc(), is(parsed.getEnum2doc()));
+    }
+}